@@ -0,0 +1,107 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.mesos.CompactOffer;
+import com.skytix.schedulerclient.mesos.MesosConstants;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.mesos.v1.Protos.AgentID;
+import static org.apache.mesos.v1.Protos.Offer;
+
+/**
+ * Tracks consecutive unusable offers per agent and role and escalates the refuse filter exponentially so agents the
+ * framework has no use for stop being offered back every few seconds.
+ *
+ * History is reset for an agent once one of its offers is used, for a role when it is revived and entirely when the
+ * framework's demand or offer constraints change.
+ */
+public final class AdaptiveDeclinePolicy {
+    private final double mInitialRefuseSeconds;
+    private final double mMaxRefuseSeconds;
+    private final double mBackoffFactor;
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> mDeclines = new ConcurrentHashMap<>();
+
+    public AdaptiveDeclinePolicy(double aInitialRefuseSeconds, double aMaxRefuseSeconds, double aBackoffFactor) {
+
+        if (aInitialRefuseSeconds <= 0 || aMaxRefuseSeconds < aInitialRefuseSeconds || aBackoffFactor < 1) {
+            throw new IllegalArgumentException(String.format("Invalid decline policy: initial=%s max=%s factor=%s", aInitialRefuseSeconds, aMaxRefuseSeconds, aBackoffFactor));
+        }
+
+        mInitialRefuseSeconds = aInitialRefuseSeconds;
+        mMaxRefuseSeconds = aMaxRefuseSeconds;
+        mBackoffFactor = aBackoffFactor;
+    }
+
+    /**
+     * Records the offer as unusable and returns the refuse duration that should be sent with its decline.
+     */
+    public double nextRefuseSeconds(Offer aOffer) {
+        return nextRefuseSeconds(aOffer.getAgentId(), getRole(aOffer));
+    }
+
+    public double nextRefuseSeconds(CompactOffer aOffer) {
+        return nextRefuseSeconds(aOffer.getAgentId(), aOffer.getRole() != null ? aOffer.getRole() : MesosConstants.ROLE_ALL);
+    }
+
+    private double nextRefuseSeconds(AgentID aAgentID, String aRole) {
+        final int declines = mDeclines.computeIfAbsent(aAgentID.getValue(), k -> new ConcurrentHashMap<>())
+                .merge(aRole, 1, Integer::sum);
+
+        return refuseSecondsFor(declines);
+    }
+
+    public int getConsecutiveDeclines(AgentID aAgentID, String aRole) {
+        final ConcurrentMap<String, Integer> roles = mDeclines.get(aAgentID.getValue());
+
+        if (roles != null) {
+            return roles.getOrDefault(aRole, 0);
+
+        } else {
+            return 0;
+        }
+
+    }
+
+    public void reset(AgentID aAgentID) {
+        mDeclines.remove(aAgentID.getValue());
+    }
+
+    public void reset(Collection<String> aRoles) {
+
+        if (aRoles == null || aRoles.isEmpty()) {
+            reset();
+
+        } else {
+
+            for (ConcurrentMap<String, Integer> roles : mDeclines.values()) {
+                roles.keySet().removeAll(aRoles);
+            }
+
+        }
+
+    }
+
+    public void reset() {
+        mDeclines.clear();
+    }
+
+    double refuseSecondsFor(int aConsecutiveDeclines) {
+        final double refuseSeconds = mInitialRefuseSeconds * Math.pow(mBackoffFactor, Math.max(0, aConsecutiveDeclines - 1));
+
+        return Math.min(refuseSeconds, mMaxRefuseSeconds);
+    }
+
+    static String getRole(Offer aOffer) {
+
+        if (aOffer.hasAllocationInfo() && aOffer.getAllocationInfo().hasRole()) {
+            return aOffer.getAllocationInfo().getRole();
+
+        } else {
+            return MesosConstants.ROLE_ALL;
+        }
+
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.skytix.schedulerclient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.apache.mesos.v1.scheduler.Protos.Call;
+
+/**
+ * Sends calls to the master from a set of bounded priority lanes so a burst of low value calls such as declines cannot
+ * hold up kills and acknowledgements.  Calls are optionally rate limited with a token bucket per master.
+ */
+@Slf4j
+public final class CallDispatcher implements Closeable {
+
+    public enum Priority {
+        CRITICAL,
+        NORMAL,
+        BULK
+    }
+
+    private final CallSender mSender;
+    private final Supplier<String> mMasterURL;
+    private final int mQueueCapacity;
+    private final double mRateLimit;
+    private final int mRateBurst;
+    private final List<Thread> mWorkers = new ArrayList<>();
+    private final Map<String, TokenBucket> mRateLimiters = new ConcurrentHashMap<>();
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final List<ArrayDeque<PendingCall>> mLanes;
+    // Mirrors the size of each lane so the depth can be read without taking the lock.
+    private final AtomicIntegerArray mQueueDepths;
+    private volatile boolean mRunning = true;
+
+    private final LongAdder[] mSubmitted;
+    private final LongAdder[] mSent;
+    private final LongAdder[] mFailed;
+    private final LongAdder[] mRejected;
+    private final LongAdder[] mQueueTimeNanos;
+
+    CallDispatcher(CallSender aSender, Supplier<String> aMasterURL, int aQueueCapacity, double aRateLimit, int aRateBurst, int aThreads) {
+
+        if (aQueueCapacity < 1 || aThreads < 1) {
+            throw new IllegalArgumentException(String.format("Invalid call dispatcher: capacity=%d threads=%d", aQueueCapacity, aThreads));
+        }
+
+        mSender = aSender;
+        mMasterURL = aMasterURL;
+        mQueueCapacity = aQueueCapacity;
+        mRateLimit = aRateLimit;
+        mRateBurst = aRateBurst;
+
+        final int lanes = Priority.values().length;
+
+        mLanes = new ArrayList<>(lanes);
+        mQueueDepths = new AtomicIntegerArray(lanes);
+        mSubmitted = new LongAdder[lanes];
+        mSent = new LongAdder[lanes];
+        mFailed = new LongAdder[lanes];
+        mRejected = new LongAdder[lanes];
+        mQueueTimeNanos = new LongAdder[lanes];
+
+        for (int i = 0; i < lanes; i++) {
+            mLanes.add(new ArrayDeque<>());
+            mSubmitted[i] = new LongAdder();
+            mSent[i] = new LongAdder();
+            mFailed[i] = new LongAdder();
+            mRejected[i] = new LongAdder();
+            mQueueTimeNanos[i] = new LongAdder();
+        }
+
+        for (int i = 0; i < aThreads; i++) {
+            final Thread worker = new Thread(this::dispatch, "mesos-call-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+
+            mWorkers.add(worker);
+        }
+
+    }
+
+    public static Priority priorityOf(Call.Type aType) {
+
+        switch (aType) {
+
+            case KILL:
+            case SHUTDOWN:
+            case ACKNOWLEDGE:
+            case ACKNOWLEDGE_OPERATION_STATUS:
+            case TEARDOWN:
+                return Priority.CRITICAL;
+
+            case DECLINE:
+            case DECLINE_INVERSE_OFFERS:
+            case RECONCILE:
+            case RECONCILE_OPERATIONS:
+                return Priority.BULK;
+
+            default:
+                return Priority.NORMAL;
+        }
+
+    }
+
+    /**
+     * Queues the call in the lane for its type.  If the lane is full the rejection is logged and the returned future
+     * fails with a {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<Void> submit(Call aCall) {
+        final Priority priority = priorityOf(aCall.getType());
+        final PendingCall pendingCall = new PendingCall(aCall, priority);
+
+        mLock.lock();
+
+        try {
+            final ArrayDeque<PendingCall> lane = mLanes.get(priority.ordinal());
+
+            if (!mRunning) {
+                pendingCall.mFuture.completeExceptionally(new RejectedExecutionException("Call dispatcher has been closed"));
+
+            } else if (lane.size() >= mQueueCapacity) {
+                mRejected[priority.ordinal()].increment();
+                pendingCall.mFuture.completeExceptionally(new RejectedExecutionException(String.format("%s call queue is full", priority)));
+
+            } else {
+                mSubmitted[priority.ordinal()].increment();
+                lane.addLast(pendingCall);
+                mQueueDepths.incrementAndGet(priority.ordinal());
+                mNotEmpty.signal();
+            }
+
+        } finally {
+            mLock.unlock();
+        }
+
+        if (pendingCall.mFuture.isCompletedExceptionally() && mRunning) {
+            log.error(String.format("Rejected %s call to Mesos.  The %s call queue is full with %d calls.", aCall.getType(), priority, mQueueCapacity));
+        }
+
+        return pendingCall.mFuture;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+
+        for (int i = 0; i < mQueueDepths.length(); i++) {
+            depth += mQueueDepths.get(i);
+        }
+
+        return depth;
+    }
+
+    public int getQueueDepth(Priority aPriority) {
+        return mQueueDepths.get(aPriority.ordinal());
+    }
+
+    public long getSubmitted(Priority aPriority) {
+        return mSubmitted[aPriority.ordinal()].sum();
+    }
+
+    public long getSent(Priority aPriority) {
+        return mSent[aPriority.ordinal()].sum();
+    }
+
+    public long getFailed(Priority aPriority) {
+        return mFailed[aPriority.ordinal()].sum();
+    }
+
+    public long getRejected(Priority aPriority) {
+        return mRejected[aPriority.ordinal()].sum();
+    }
+
+    /**
+     * Average time in milliseconds calls of the given priority waited in the queue before being sent.
+     */
+    public double getAverageQueueTimeMillis(Priority aPriority) {
+        final long dispatched = mSent[aPriority.ordinal()].sum() + mFailed[aPriority.ordinal()].sum();
+
+        if (dispatched > 0) {
+            return mQueueTimeNanos[aPriority.ordinal()].sum() / (double) dispatched / TimeUnit.MILLISECONDS.toNanos(1);
+
+        } else {
+            return 0;
+        }
+
+    }
+
+    @Override
+    public void close() {
+        final List<PendingCall> abandoned = new ArrayList<>();
+
+        mLock.lock();
+
+        try {
+            mRunning = false;
+
+            for (int i = 0; i < mLanes.size(); i++) {
+                abandoned.addAll(mLanes.get(i));
+                mLanes.get(i).clear();
+                mQueueDepths.set(i, 0);
+            }
+
+            mNotEmpty.signalAll();
+
+        } finally {
+            mLock.unlock();
+        }
+
+        for (PendingCall pendingCall : abandoned) {
+            pendingCall.mFuture.cancel(false);
+        }
+
+        for (Thread worker : mWorkers) {
+            worker.interrupt();
+        }
+
+    }
+
+    private PendingCall take() throws InterruptedException {
+        mLock.lock();
+
+        try {
+
+            while (mRunning) {
+
+                for (int i = 0; i < mLanes.size(); i++) {
+
+                    if (!mLanes.get(i).isEmpty()) {
+                        mQueueDepths.decrementAndGet(i);
+                        return mLanes.get(i).pollFirst();
+                    }
+
+                }
+
+                mNotEmpty.await();
+            }
+
+            return null;
+
+        } finally {
+            mLock.unlock();
+        }
+
+    }
+
+    private void dispatch() {
+
+        try {
+
+            while (mRunning) {
+
+                if (mRateLimit > 0) {
+                    // Taken before the call is chosen so a call submitted while waiting for a token can still jump ahead.
+                    getRateLimiter(mMasterURL.get()).acquire();
+                }
+
+                final PendingCall pendingCall = take();
+
+                if (pendingCall == null) {
+                    break;
+                }
+
+                final int lane = pendingCall.mPriority.ordinal();
+
+                try {
+                    mQueueTimeNanos[lane].add(System.nanoTime() - pendingCall.mSubmittedNanos);
+                    mSender.send(pendingCall.mCall);
+                    mSent[lane].increment();
+                    pendingCall.mFuture.complete(null);
+
+                } catch (InterruptedException aE) {
+                    pendingCall.mFuture.cancel(false);
+                    throw aE;
+
+                } catch (Exception aE) {
+                    mFailed[lane].increment();
+                    pendingCall.mFuture.completeExceptionally(aE);
+                }
+
+            }
+
+        } catch (InterruptedException aE) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    private TokenBucket getRateLimiter(String aMasterURL) {
+        // A master taking over after a failover starts with an empty bucket so it isn't hit with a burst of backlog.
+        return mRateLimiters.computeIfAbsent(String.valueOf(aMasterURL), (master) -> new TokenBucket(mRateLimit, mRateBurst, mRateLimiters.isEmpty() ? mRateBurst : 0));
+    }
+
+    interface CallSender {
+        void send(Call aCall) throws Exception;
+    }
+
+    private static final class PendingCall {
+        private final Call mCall;
+        private final Priority mPriority;
+        private final long mSubmittedNanos = System.nanoTime();
+        private final CompletableFuture<Void> mFuture = new CompletableFuture<>();
+
+        private PendingCall(Call aCall, Priority aPriority) {
+            mCall = aCall;
+            mPriority = aPriority;
+        }
+
+    }
+
+}
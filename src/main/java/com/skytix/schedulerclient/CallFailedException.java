@@ -0,0 +1,68 @@
+package com.skytix.schedulerclient;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.apache.mesos.v1.scheduler.Protos.Call;
+
+/**
+ * Thrown when a call could not be delivered to the master, either because the master rejected it or because the leading
+ * master changed and the call was not safe to retry.
+ */
+public class CallFailedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final Call.Type mCallType;
+    private final int mStatusCode;
+    private final boolean mLeaderChanged;
+    private final String mLeaderURL;
+
+    public CallFailedException(Call.Type aCallType, int aStatusCode, boolean aLeaderChanged, String aMessage) {
+        this(aCallType, aStatusCode, aLeaderChanged, aMessage, null);
+    }
+
+    public CallFailedException(Call.Type aCallType, int aStatusCode, boolean aLeaderChanged, String aMessage, Throwable aCause) {
+        super(aMessage, aCause);
+        mCallType = aCallType;
+        mStatusCode = aStatusCode;
+        mLeaderChanged = aLeaderChanged;
+        mLeaderURL = null;
+    }
+
+    /**
+     * Creates the failure for a call redirected by a master that is no longer the leader.
+     */
+    public CallFailedException(Call.Type aCallType, int aStatusCode, String aLeaderURL, String aMessage) {
+        super(aMessage);
+        mCallType = aCallType;
+        mStatusCode = aStatusCode;
+        mLeaderChanged = true;
+        mLeaderURL = aLeaderURL;
+    }
+
+    public Call.Type getCallType() {
+        return mCallType;
+    }
+
+    /**
+     * @return the HTTP status returned by the master or 0 if no response was received.
+     */
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * @return true if the call failed because the leading master could not be reached or has changed.
+     */
+    public boolean isLeaderChanged() {
+        return mLeaderChanged;
+    }
+
+    /**
+     * @return the master the call was redirected to, if the master it was sent to named the new leader.
+     */
+    public Optional<String> getLeaderURL() {
+        return Optional.ofNullable(mLeaderURL);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.skytix.schedulerclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded admin endpoint serving {@link SchedulerDiagnostics} as JSON.
+ *
+ * <ul>
+ *     <li>GET /diagnostics returns an array with a snapshot of every registered Scheduler.</li>
+ *     <li>GET /diagnostics/{frameworkID} returns the snapshot of a single Scheduler.</li>
+ * </ul>
+ */
+@Slf4j
+public final class DiagnosticsServer implements Closeable {
+    private static final String CONTEXT = "/diagnostics";
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutorService;
+    private final ConcurrentMap<String, Scheduler> mSchedulers = new ConcurrentHashMap<>();
+
+    public static DiagnosticsServer start(InetSocketAddress aAddress) throws IOException {
+        return new DiagnosticsServer(aAddress);
+    }
+
+    private DiagnosticsServer(InetSocketAddress aAddress) throws IOException {
+        mServer = HttpServer.create(aAddress, 0);
+
+        mExecutorService = Executors.newSingleThreadExecutor((runnable) -> {
+            final Thread thread = new Thread(runnable, "mesos-diagnostics-server");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        mServer.createContext(CONTEXT, this::handle);
+        mServer.setExecutor(mExecutorService);
+        mServer.start();
+
+        log.info(String.format("Serving scheduler diagnostics at http://%s:%d%s", aAddress.getHostString(), getAddress().getPort(), CONTEXT));
+    }
+
+    public void register(Scheduler aScheduler) {
+        mSchedulers.put(aScheduler.getDiagnostics().getFrameworkID(), aScheduler);
+    }
+
+    public void unregister(Scheduler aScheduler) {
+        mSchedulers.remove(aScheduler.getDiagnostics().getFrameworkID(), aScheduler);
+    }
+
+    public InetSocketAddress getAddress() {
+        return mServer.getAddress();
+    }
+
+    @Override
+    public void close() {
+        mServer.stop(0);
+        mExecutorService.shutdown();
+    }
+
+    private void handle(HttpExchange aExchange) throws IOException {
+
+        try {
+
+            if (!"GET".equals(aExchange.getRequestMethod())) {
+                aExchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            final String path = aExchange.getRequestURI().getPath();
+
+            if (path.equals(CONTEXT) || path.equals(CONTEXT + "/")) {
+                final StringBuilder json = new StringBuilder("[");
+
+                for (Scheduler scheduler : mSchedulers.values()) {
+                    json.append(json.length() > 1 ? "," : "").append(scheduler.getDiagnostics().toJson());
+                }
+
+                respond(aExchange, json.append("]").toString());
+
+            } else {
+                final Scheduler scheduler = mSchedulers.get(path.substring(CONTEXT.length() + 1));
+
+                if (scheduler != null) {
+                    respond(aExchange, scheduler.getDiagnostics().toJson());
+
+                } else {
+                    aExchange.sendResponseHeaders(404, -1);
+                }
+
+            }
+
+        } finally {
+            aExchange.close();
+        }
+
+    }
+
+    private void respond(HttpExchange aExchange, String aJson) throws IOException {
+        final byte[] body = aJson.getBytes(StandardCharsets.UTF_8);
+
+        aExchange.getResponseHeaders().add("Content-Type", "application/json");
+        aExchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream out = aExchange.getResponseBody()) {
+            out.write(body);
+        }
+
+    }
+
+}
@@ -0,0 +1,331 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.mesos.CompactOffer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.zookeeper.KeeperException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.mesos.v1.scheduler.Protos.Event;
+
+/**
+ * Runs one replica of a framework where only the replica holding a ZooKeeper {@link LeaderLatch} subscribes to Mesos.
+ *
+ * The FrameworkID is shared between replicas through ZooKeeper so a standby taking over resubscribes as the same
+ * framework.  Standbys read the FrameworkID ahead of time so failover only costs the subscribe call.  Task state is not
+ * replicated, so a new leader should reconcile its tasks once it has subscribed.
+ *
+ * A leader that loses its ZooKeeper session or latch closes its Scheduler immediately.  A leader whose Mesos
+ * subscription ends closes its Scheduler and goes to the back of the election so another replica can take over.
+ */
+@Slf4j
+public final class HighAvailabilityScheduler implements Closeable {
+    private static final String LEADER_PATH = "/leader";
+    private static final String FRAMEWORK_ID_PATH = "/framework-id";
+
+    private final HighAvailabilitySchedulerConfig mConfig;
+    private final SchedulerEventHandler mSchedulerEventHandler;
+    private final CuratorFramework mCurator;
+    private final ExecutorService mExecutorService;
+    private final String mReplicaID;
+
+    private volatile LeaderLatch mLeaderLatch;
+    private volatile Scheduler mScheduler;
+    private volatile String mFrameworkID;
+    private volatile boolean mRunning = true;
+    private int mTerm = 0;
+
+    public static HighAvailabilityScheduler newScheduler(HighAvailabilitySchedulerConfig aConfig, SchedulerEventHandler aEventHandler) throws IOException {
+        final HighAvailabilityScheduler scheduler = new HighAvailabilityScheduler(aConfig, aEventHandler);
+        scheduler.init();
+
+        return scheduler;
+    }
+
+    private HighAvailabilityScheduler(HighAvailabilitySchedulerConfig aConfig, SchedulerEventHandler aEventHandler) {
+
+        if (StringUtils.isEmpty(aConfig.getZooKeeperURL())) {
+            throw new IllegalArgumentException("zooKeeperURL configuration is required");
+        }
+
+        mConfig = aConfig;
+        mSchedulerEventHandler = aEventHandler;
+        mReplicaID = StringUtils.isEmpty(aConfig.getReplicaID()) ? UUID.randomUUID().toString() : aConfig.getReplicaID();
+
+        mCurator = CuratorFrameworkFactory.newClient(
+                aConfig.getZooKeeperURL(),
+                aConfig.getZooKeeperSessionTimeoutMs(),
+                aConfig.getZooKeeperConnectionTimeoutMs(),
+                new ExponentialBackoffRetry(1000, 3)
+        );
+
+        // Leadership changes are applied one at a time off the Curator event thread.
+        mExecutorService = Executors.newSingleThreadExecutor((runnable) -> {
+            final Thread thread = new Thread(runnable, "mesos-ha-scheduler-" + mReplicaID);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+    }
+
+    private void init() throws IOException {
+        mCurator.start();
+
+        try {
+
+            if (!mCurator.blockUntilConnected(mConfig.getZooKeeperConnectionTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new IOException(String.format("Unable to connect to ZooKeeper at %s", mConfig.getZooKeeperURL()));
+            }
+
+            mFrameworkID = readFrameworkID().orElse(null);
+
+        } catch (InterruptedException aE) {
+            mCurator.close();
+            throw new IOException(aE);
+
+        } catch (IOException aE) {
+            mCurator.close();
+            throw aE;
+        }
+
+        joinElection();
+    }
+
+    public boolean isLeader() {
+        return mRunning && mLeaderLatch.hasLeadership();
+    }
+
+    public Optional<Scheduler> getScheduler() {
+        return Optional.ofNullable(mScheduler);
+    }
+
+    public Optional<String> getFrameworkID() {
+        return Optional.ofNullable(mFrameworkID);
+    }
+
+    public String getReplicaID() {
+        return mReplicaID;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mRunning = false;
+
+        try {
+            mExecutorService.submit(this::stopScheduler).get();
+            mLeaderLatch.close(LeaderLatch.CloseMode.SILENT);
+
+        } catch (Exception aE) {
+            throw new IOException(aE);
+
+        } finally {
+            mExecutorService.shutdown();
+            mCurator.close();
+        }
+
+    }
+
+    private synchronized void joinElection() throws IOException {
+        mLeaderLatch = new LeaderLatch(mCurator, mConfig.getZooKeeperPath() + LEADER_PATH, mReplicaID);
+
+        mLeaderLatch.addListener(new LeaderLatchListener() {
+
+            @Override
+            public void isLeader() {
+                mExecutorService.submit(HighAvailabilityScheduler.this::startScheduler);
+            }
+
+            @Override
+            public void notLeader() {
+                mExecutorService.submit(HighAvailabilityScheduler.this::stopScheduler);
+            }
+
+        });
+
+        try {
+            mLeaderLatch.start();
+
+        } catch (Exception aE) {
+            throw new IOException("Unable to join the scheduler leader election", aE);
+        }
+
+    }
+
+    private void startScheduler() {
+
+        if (!mRunning || mScheduler != null || !mLeaderLatch.hasLeadership()) {
+            return;
+        }
+
+        try {
+            final String frameworkID = getOrCreateFrameworkID();
+
+            log.info(String.format("Replica %s elected leader.  Subscribing as FrameworkID: %s", mReplicaID, frameworkID));
+
+            mScheduler = Scheduler.newScheduler(
+                    mConfig.toBuilder().frameworkID(frameworkID).build(),
+                    createEventHandler(++mTerm)
+            );
+
+        } catch (Exception aE) {
+            log.error(String.format("Replica %s was unable to subscribe.  Rejoining the election.", mReplicaID), aE);
+            rejoinElection();
+        }
+
+    }
+
+    /**
+     * Passes events through to the framework's handler and gives up leadership when the subscription ends while this
+     * replica is still the leader.
+     */
+    private SchedulerEventHandler createEventHandler(int aTerm) {
+
+        return new SchedulerEventHandler() {
+
+            @Override
+            public void onSubscribe(SchedulerRemote aScheduler, Event.Subscribed aSubscribeEvent) {
+                mSchedulerEventHandler.onSubscribe(aScheduler, aSubscribeEvent);
+            }
+
+            @Override
+            public void onTerminate(Exception aException) {
+                mSchedulerEventHandler.onTerminate(aException);
+
+                if (mRunning) {
+                    mExecutorService.submit(() -> subscriptionLost(aTerm));
+                }
+
+            }
+
+            @Override
+            public void onDisconnect() {
+                mSchedulerEventHandler.onDisconnect();
+
+                if (mRunning) {
+                    mExecutorService.submit(() -> subscriptionLost(aTerm));
+                }
+
+            }
+
+            @Override
+            public void onExit() {
+                mSchedulerEventHandler.onExit();
+            }
+
+            @Override
+            public void handleEvent(Event aEvent) {
+                mSchedulerEventHandler.handleEvent(aEvent);
+            }
+
+            @Override
+            public void handleOffers(List<CompactOffer> aOffers) {
+                mSchedulerEventHandler.handleOffers(aOffers);
+            }
+
+        };
+
+    }
+
+    private void subscriptionLost(int aTerm) {
+
+        // Ignore a Scheduler that has already been replaced or closed.
+        if (aTerm == mTerm && mScheduler != null) {
+            log.warn(String.format("Replica %s lost its subscription to Mesos.  Rejoining the election.", mReplicaID));
+            stopScheduler();
+            rejoinElection();
+        }
+
+    }
+
+    private void rejoinElection() {
+
+        try {
+            // Go to the back of the queue so another replica gets a chance.
+            mLeaderLatch.close(LeaderLatch.CloseMode.SILENT);
+
+            if (mRunning) {
+                joinElection();
+            }
+
+        } catch (IOException aCloseException) {
+            log.error(String.format("Replica %s was unable to rejoin the election", mReplicaID), aCloseException);
+        }
+
+    }
+
+    private void stopScheduler() {
+        final Scheduler scheduler = mScheduler;
+
+        if (scheduler != null) {
+            log.info(String.format("Replica %s is no longer the leader.  Closing the Scheduler.", mReplicaID));
+            mScheduler = null;
+
+            try {
+                scheduler.close();
+
+            } catch (IOException aE) {
+                log.error("Error closing the Scheduler", aE);
+            }
+
+        }
+
+    }
+
+    private String getOrCreateFrameworkID() throws Exception {
+        final Optional<String> existing = readFrameworkID();
+
+        if (existing.isPresent()) {
+            mFrameworkID = existing.get();
+
+        } else {
+            final String frameworkID = StringUtils.isEmpty(mConfig.getFrameworkID()) ? UUID.randomUUID().toString() : mConfig.getFrameworkID();
+
+            try {
+                mCurator.create()
+                        .creatingParentsIfNeeded()
+                        .forPath(mConfig.getZooKeeperPath() + FRAMEWORK_ID_PATH, frameworkID.getBytes(StandardCharsets.UTF_8));
+
+                mFrameworkID = frameworkID;
+
+            } catch (KeeperException.NodeExistsException aE) {
+                // Another replica got there first.
+                mFrameworkID = readFrameworkID().orElseThrow();
+            }
+
+        }
+
+        return mFrameworkID;
+    }
+
+    private Optional<String> readFrameworkID() throws IOException {
+
+        try {
+            final byte[] data = mCurator.getData().forPath(mConfig.getZooKeeperPath() + FRAMEWORK_ID_PATH);
+
+            return Optional.of(new String(data, StandardCharsets.UTF_8));
+
+        } catch (KeeperException.NoNodeException aE) {
+            return Optional.empty();
+
+        } catch (Exception aE) {
+            throw new IOException("Unable to read the FrameworkID from ZooKeeper", aE);
+        }
+
+    }
+
+}
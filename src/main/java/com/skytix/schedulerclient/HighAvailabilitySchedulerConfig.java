@@ -0,0 +1,18 @@
+package com.skytix.schedulerclient;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.experimental.SuperBuilder;
+
+@SuperBuilder(toBuilder = true)
+@Getter
+public class HighAvailabilitySchedulerConfig extends SchedulerConfig {
+    private String zooKeeperURL; // e.g. zk1:2181,zk2:2181,zk3:2181
+    @Builder.Default
+    private String zooKeeperPath = "/mesos-scheduler-client"; // Must be unique per framework.
+    private String replicaID;
+    @Builder.Default
+    private int zooKeeperSessionTimeoutMs = 15000;
+    @Builder.Default
+    private int zooKeeperConnectionTimeoutMs = 5000;
+}
@@ -0,0 +1,191 @@
+package com.skytix.schedulerclient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.mesos.v1.Protos.*;
+
+/**
+ * Plans a {@link MaintenanceHandler} run for each inverse offer so it starts {@link SchedulerConfig#getMaintenanceLeadTimeMillis()}
+ * before the agent becomes unavailable.  Plans for different agents run independently so drains happen in parallel.
+ * A rescinded inverse offer cancels its plan.
+ */
+@Slf4j
+final class MaintenanceCoordinator {
+    private final Scheduler mScheduler;
+    private final MaintenanceHandler mHandler;
+    private final long mLeadTimeMillis;
+    private final ConcurrentMap<String, Plan> mPlans = new ConcurrentHashMap<>();
+    private final ExecutorService mHandlerExecutor;
+
+    MaintenanceCoordinator(Scheduler aScheduler, MaintenanceHandler aHandler, long aLeadTimeMillis, String aFrameworkID) {
+        mScheduler = aScheduler;
+        mHandler = aHandler;
+        mLeadTimeMillis = aLeadTimeMillis;
+
+        // Handlers may block on the Scheduler's own calls so they can't share the bounded async executor that sends them.
+        mHandlerExecutor = Executors.newCachedThreadPool((runnable) -> {
+            final Thread thread = new Thread(runnable, "mesos-maintenance-" + aFrameworkID);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    void received(List<InverseOffer> aInverseOffers) {
+
+        for (InverseOffer inverseOffer : aInverseOffers) {
+            final String offerId = inverseOffer.getId().getValue();
+            final Plan plan = new Plan(inverseOffer);
+
+            if (mPlans.putIfAbsent(offerId, plan) != null) {
+                continue;
+            }
+
+            final long delayMillis = getStartMillis(inverseOffer) - mLeadTimeMillis - System.currentTimeMillis();
+
+            log.info(String.format("Agent %s is scheduled for maintenance.  Preparing in %d ms.", inverseOffer.getAgentId().getValue(), Math.max(0, delayMillis)));
+
+            try {
+                plan.mStart = mScheduler.getTimerService().schedule(
+                        () -> start(plan),
+                        Math.max(0, delayMillis),
+                        TimeUnit.MILLISECONDS
+                );
+
+            } catch (RejectedExecutionException aE) {
+                // The Scheduler has been closed.
+                mPlans.remove(offerId, plan);
+            }
+
+        }
+
+    }
+
+    void rescinded(OfferID aInverseOfferID) {
+        final Plan plan = mPlans.remove(aInverseOfferID.getValue());
+
+        if (plan != null) {
+            log.info(String.format("Maintenance of agent %s was rescinded.  Cancelling its plan.", plan.mInverseOffer.getAgentId().getValue()));
+            plan.cancel();
+        }
+
+    }
+
+    int getPlannedAgents() {
+        return mPlans.size();
+    }
+
+    void clear() {
+        mPlans.values().forEach(Plan::cancel);
+        mPlans.clear();
+    }
+
+    void close() {
+        clear();
+        mHandlerExecutor.shutdown();
+    }
+
+    private void start(Plan aPlan) {
+
+        try {
+            mHandlerExecutor.execute(() -> prepare(aPlan));
+
+        } catch (RejectedExecutionException aE) {
+            // The Scheduler has been closed.
+            mPlans.remove(aPlan.mInverseOffer.getId().getValue(), aPlan);
+        }
+
+    }
+
+    private void prepare(Plan aPlan) {
+        final InverseOffer inverseOffer = aPlan.mInverseOffer;
+        final CompletableFuture<?> preparation;
+
+        if (!mPlans.containsKey(inverseOffer.getId().getValue())) {
+            // Rescinded while waiting to start.
+            return;
+        }
+
+        try {
+            preparation = mHandler.prepare(mScheduler.getRemote(), inverseOffer);
+
+        } catch (RuntimeException aE) {
+            complete(aPlan, aE);
+            return;
+        }
+
+        aPlan.mPreparation = preparation;
+        preparation.whenComplete((ignored, aThrowable) -> complete(aPlan, aThrowable));
+    }
+
+    private void complete(Plan aPlan, Throwable aThrowable) {
+        final InverseOffer inverseOffer = aPlan.mInverseOffer;
+
+        // Only answer inverse offers the master still considers outstanding.
+        if (!mPlans.remove(inverseOffer.getId().getValue(), aPlan)) {
+            return;
+        }
+
+        final List<OfferID> inverseOfferIds = Collections.singletonList(inverseOffer.getId());
+
+        if (aThrowable == null) {
+            log.info(String.format("Agent %s is ready for maintenance.  Accepting the inverse offer.", inverseOffer.getAgentId().getValue()));
+            mScheduler.getRemote().acceptInverseOffers(inverseOfferIds);
+
+        } else {
+            log.error(String.format("Unable to prepare agent %s for maintenance.  Declining the inverse offer.", inverseOffer.getAgentId().getValue()), aThrowable);
+            mScheduler.getRemote().declineInverseOffers(inverseOfferIds);
+        }
+
+    }
+
+    private static long getStartMillis(InverseOffer aInverseOffer) {
+
+        if (aInverseOffer.hasUnavailability()) {
+            return TimeUnit.NANOSECONDS.toMillis(aInverseOffer.getUnavailability().getStart().getNanoseconds());
+
+        } else {
+            // No window means the agent is going away now.
+            return 0;
+        }
+
+    }
+
+    private static final class Plan {
+        private final InverseOffer mInverseOffer;
+        private volatile ScheduledFuture<?> mStart;
+        private volatile CompletableFuture<?> mPreparation;
+
+        private Plan(InverseOffer aInverseOffer) {
+            mInverseOffer = aInverseOffer;
+        }
+
+        private void cancel() {
+            final ScheduledFuture<?> start = mStart;
+            final CompletableFuture<?> preparation = mPreparation;
+
+            if (start != null) {
+                start.cancel(false);
+            }
+
+            if (preparation != null) {
+                // Calls already sent by the handler are not undone.
+                preparation.cancel(false);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.skytix.schedulerclient;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.apache.mesos.v1.Protos.InverseOffer;
+
+/**
+ * Prepares the framework for an agent's maintenance window.  The Scheduler calls {@link #prepare} ahead of the
+ * inverse offer's Unavailability and accepts the inverse offer once the returned future completes.  If the future
+ * fails the inverse offer is declined.
+ * <p>
+ * {@link #prepare} is called on a maintenance thread of its own rather than one the Scheduler sends calls from, so it
+ * may block, e.g. on the future returned by {@link SchedulerRemote#killTasks}.
+ */
+@FunctionalInterface
+public interface MaintenanceHandler {
+
+    CompletableFuture<?> prepare(SchedulerRemote aRemote, InverseOffer aInverseOffer);
+
+    /**
+     * @return a handler which kills every task on the agent.
+     */
+    static MaintenanceHandler drainAgent() {
+        return (remote, inverseOffer) -> remote.drainAgent(inverseOffer.getAgentId());
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.jfr.OfferHoldEvent;
+import jdk.jfr.EventType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.mesos.v1.Protos.AgentID;
+import static org.apache.mesos.v1.Protos.Offer;
+import static org.apache.mesos.v1.Protos.OfferID;
+
+/**
+ * Keeps track of offers that have been received but not yet accepted, declined or rescinded.
+ */
+public final class OfferTracker {
+    static final String OUTCOME_ACCEPT = "ACCEPT";
+    static final String OUTCOME_DECLINE = "DECLINE";
+    static final String OUTCOME_RESCIND = "RESCIND";
+    static final String OUTCOME_EXPIRE = "EXPIRE";
+
+    private static final EventType HOLD_EVENT_TYPE = EventType.getEventType(OfferHoldEvent.class);
+
+    private final String mFrameworkId;
+    private final ConcurrentMap<String, OutstandingOffer> mOffers = new ConcurrentHashMap<>();
+    private final LongAdder mExpiredBatches = new LongAdder();
+    private final LongAdder mExpiredOffers = new LongAdder();
+    private final LongAdder mHandlerOverruns = new LongAdder();
+
+    OfferTracker(String aFrameworkId) {
+        mFrameworkId = aFrameworkId;
+    }
+
+    void received(List<Offer> aOffers) {
+        final long receivedNanos = System.nanoTime();
+        // Only offers that arrived while recording have a meaningful hold time.
+        final boolean recording = HOLD_EVENT_TYPE.isEnabled();
+
+        for (Offer offer : aOffers) {
+            OfferHoldEvent holdEvent = null;
+
+            if (recording) {
+                holdEvent = new OfferHoldEvent();
+                holdEvent.begin();
+            }
+
+            mOffers.put(offer.getId().getValue(), new OutstandingOffer(offer.getAgentId().getValue(), receivedNanos, holdEvent));
+        }
+
+    }
+
+    /**
+     * @return the agent of each offer that was still outstanding.  Offers that had already been accepted, declined,
+     * rescinded or expired are left out.
+     */
+    Map<OfferID, AgentID> resolved(List<OfferID> aOfferIDs, String aOutcome) {
+        final Map<OfferID, AgentID> outstanding = new LinkedHashMap<>();
+
+        for (OfferID offerID : aOfferIDs) {
+            final OutstandingOffer offer = remove(offerID, aOutcome);
+
+            if (offer != null) {
+                outstanding.put(offerID, AgentID.newBuilder().setValue(offer.mAgentId).build());
+            }
+
+        }
+
+        return outstanding;
+    }
+
+    /**
+     * Removes every offer of an OFFERS batch that the handler has not yet accepted or declined once its time budget has
+     * run out.
+     *
+     * @return the offers that should now be declined.
+     */
+    List<OfferID> expire(List<OfferID> aBatch) {
+        final List<OfferID> expired = new ArrayList<>();
+
+        for (OfferID offerID : aBatch) {
+
+            if (resolved(offerID, OUTCOME_EXPIRE)) {
+                expired.add(offerID);
+            }
+
+        }
+
+        if (!expired.isEmpty()) {
+            mExpiredBatches.increment();
+            mExpiredOffers.add(expired.size());
+        }
+
+        return expired;
+    }
+
+    void handlerOverrun() {
+        mHandlerOverruns.increment();
+    }
+
+    /**
+     * @return the number of OFFERS batches that had offers automatically declined after exceeding their time budget.
+     */
+    public long getExpiredBatches() {
+        return mExpiredBatches.sum();
+    }
+
+    /**
+     * @return the number of offers automatically declined after exceeding their time budget.
+     */
+    public long getExpiredOffers() {
+        return mExpiredOffers.sum();
+    }
+
+    /**
+     * @return the number of times the handler took longer than the time budget to process an OFFERS event.
+     */
+    public long getHandlerOverruns() {
+        return mHandlerOverruns.sum();
+    }
+
+    public int getOutstandingOffers() {
+        return mOffers.size();
+    }
+
+    /**
+     * @return the outstanding offers and how long they have been held.  The view is weakly consistent with offers
+     * arriving or being resolved at the same time.
+     */
+    List<SchedulerDiagnostics.OutstandingOffer> snapshot() {
+        final long nowNanos = System.nanoTime();
+        final List<SchedulerDiagnostics.OutstandingOffer> offers = new ArrayList<>();
+
+        mOffers.forEach((offerId, offer) -> offers.add(new SchedulerDiagnostics.OutstandingOffer(
+                offerId,
+                offer.mAgentId,
+                TimeUnit.NANOSECONDS.toMillis(nowNanos - offer.mReceivedNanos)
+        )));
+
+        return offers;
+    }
+
+    boolean resolved(OfferID aOfferID, String aOutcome) {
+        return remove(aOfferID, aOutcome) != null;
+    }
+
+    private OutstandingOffer remove(OfferID aOfferID, String aOutcome) {
+        final OutstandingOffer offer = mOffers.remove(aOfferID.getValue());
+
+        if (offer == null) {
+            return null;
+        }
+
+        if (offer.mHoldEvent != null) {
+            final OfferHoldEvent holdEvent = offer.mHoldEvent;
+
+            holdEvent.end();
+
+            if (holdEvent.shouldCommit()) {
+                holdEvent.frameworkId = mFrameworkId;
+                holdEvent.offerId = aOfferID.getValue();
+                holdEvent.agentId = offer.mAgentId;
+                holdEvent.outcome = aOutcome;
+                holdEvent.commit();
+            }
+
+        }
+
+        return offer;
+    }
+
+    void clear() {
+        mOffers.clear();
+    }
+
+    private static final class OutstandingOffer {
+        private final String mAgentId;
+        private final long mReceivedNanos;
+        private final OfferHoldEvent mHoldEvent;
+
+        private OutstandingOffer(String aAgentId, long aReceivedNanos, OfferHoldEvent aHoldEvent) {
+            mAgentId = aAgentId;
+            mReceivedNanos = aReceivedNanos;
+            mHoldEvent = aHoldEvent;
+        }
+
+    }
+
+}
@@ -1,6 +1,12 @@
 package com.skytix.schedulerclient;
 
+import com.skytix.schedulerclient.jfr.CallSendEvent;
+import com.skytix.schedulerclient.jfr.EventDecodeEvent;
+import com.skytix.schedulerclient.jfr.FrameReadEvent;
+import com.skytix.schedulerclient.jfr.HandlerDispatchEvent;
+import com.skytix.schedulerclient.mesos.CompactOffer;
 import com.skytix.schedulerclient.mesos.MesosConstants;
+import com.skytix.schedulerclient.mesos.StringInternPool;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.mesos.v1.scheduler.Protos;
@@ -10,37 +16,70 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Paths;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.apache.mesos.v1.Protos.*;
 
 @Slf4j
 public final class Scheduler implements Closeable {
     private static final Semaphore mSemaphore = new Semaphore(0);
+    private static final int MAX_RECENT_SEND_ERRORS = 20;
 
     private final FrameworkID mFrameworkId;
     private final SchedulerConfig mConfig;
     private final HttpClient mHttpClient;
     private final SchedulerEventHandler mSchedulerEventHandler;
     private final LeaderResolver mLeaderResolver;
+    private final AdaptiveDeclinePolicy mDeclinePolicy;
+    private final OfferTracker mOfferTracker;
+    private final TaskKiller mTaskKiller;
+    private final MaintenanceCoordinator mMaintenanceCoordinator;
+    private final TaskRegistry mTaskRegistry;
+    private final CallDispatcher mCallDispatcher;
+    private final SchedulerEventPublisher mEventPublisher = new SchedulerEventPublisher();
+    private final StringInternPool mInternPool;
+    private final ScheduledExecutorService mTimerService;
+    private final ExecutorService mAsyncExecutor;
+    private final AtomicIntegerArray mInFlightCalls = new AtomicIntegerArray(Protos.Call.Type.values().length);
+    private final AtomicReference<List<SchedulerDiagnostics.SendError>> mRecentSendErrors = new AtomicReference<>(Collections.emptyList());
+    private final Object mSubscribeLock = new Object();
 
     private ScheduledExecutorService mExecutorService = null;
     private SchedulerRemote mRemote;
-    private String mMesosStreamID = null;
-    private String mMasterURL = null;
+    private DiagnosticsServer mDiagnosticsServer;
+    private volatile String mMesosStreamID = null;
+    private volatile String mMasterURL = null;
     private ScheduledFuture<?> mClientThread;
+    private volatile InputStream mEventStream;
+    private volatile boolean mSubscriptionEnded = false;
     private FrameworkInfo mFrameworkInfo;
-    private boolean mRunning = true;
+    private volatile boolean mRunning = true;
+    private volatile long mLastHeartbeatNanos = 0;
 
     public static Scheduler newScheduler(String aFrameworkId, String aMesosMasterURI, SchedulerEventHandler aEventHandler) throws IOException {
 
@@ -59,25 +98,102 @@ public final class Scheduler implements Closeable {
     }
 
     public static Scheduler newScheduler(SchedulerConfig aConfig, SchedulerEventHandler aEventHandler, ScheduledExecutorService aExecutorService) throws IOException {
-        final Scheduler scheduler = new Scheduler(aConfig, aEventHandler);
-        scheduler.init(aExecutorService);
+        final TaskRegistry taskRegistry = openTaskRegistry(aConfig);
+        final Scheduler scheduler;
+
+        try {
+            scheduler = new Scheduler(aConfig, aEventHandler, taskRegistry);
+
+        } catch (RuntimeException aE) {
+            // Invalid configuration.  Releases the journal lock so a corrected config can reuse it.
+            aExecutorService.shutdown();
+
+            try {
+                taskRegistry.close();
+
+            } catch (IOException aCloseException) {
+                aE.addSuppressed(aCloseException);
+            }
+
+            throw aE;
+        }
+
+        try {
+            scheduler.init(aExecutorService);
+
+        } catch (IOException | RuntimeException aE) {
+
+            try {
+                // Releases the threads, the diagnostics port and the journal lock so the Scheduler can be recreated.
+                scheduler.close();
+
+            } catch (IOException | RuntimeException aCloseException) {
+                aE.addSuppressed(aCloseException);
+            }
+
+            throw aE;
+        }
 
         return scheduler;
     }
 
-    private Scheduler(SchedulerConfig aConfig, SchedulerEventHandler aEventHandler) {
-        final FrameworkID.Builder frameworkID = FrameworkID.newBuilder();
+    private static TaskRegistry openTaskRegistry(SchedulerConfig aConfig) throws IOException {
 
-        if (StringUtils.isEmpty(aConfig.getFrameworkID())) {
-            frameworkID.setValue(UUID.randomUUID().toString());
+        if (StringUtils.isNotEmpty(aConfig.getJournalPath())) {
+            return TaskRegistry.recover(StateJournal.open(Paths.get(aConfig.getJournalPath()), aConfig.getJournalSegmentSize()));
 
         } else {
+            return new TaskRegistry();
+        }
+
+    }
+
+    /**
+     * Everything that can reject the configuration runs before any threads are started, so a failed constructor only
+     * leaves the TaskRegistry for {@link #newScheduler} to close.
+     */
+    private Scheduler(SchedulerConfig aConfig, SchedulerEventHandler aEventHandler, TaskRegistry aTaskRegistry) {
+        final FrameworkID.Builder frameworkID = FrameworkID.newBuilder();
+
+        if (StringUtils.isEmpty(aConfig.getMesosMasterURL())) {
+            throw new IllegalArgumentException("mesosMasterURL configuration is required");
+        }
+
+        mTaskRegistry = aTaskRegistry;
+
+        if (StringUtils.isNotEmpty(aConfig.getFrameworkID())) {
             frameworkID.setValue(aConfig.getFrameworkID());
+
+        } else if (mTaskRegistry.getFrameworkID().isPresent()) {
+            frameworkID.setValue(mTaskRegistry.getFrameworkID().get());
+            log.info(String.format("Using FrameworkID %s restored from the state journal", frameworkID.getValue()));
+
+        } else {
+            frameworkID.setValue(UUID.randomUUID().toString());
         }
 
+        mTaskRegistry.frameworkID(frameworkID.getValue());
+
         mConfig = aConfig;
         mFrameworkId = frameworkID.build();
         mSchedulerEventHandler = aEventHandler;
+        mOfferTracker = new OfferTracker(mFrameworkId.getValue());
+        mTaskKiller = new TaskKiller(this, aConfig);
+
+        if (aConfig.getMaintenanceHandler() != null) {
+            mMaintenanceCoordinator = new MaintenanceCoordinator(this, aConfig.getMaintenanceHandler(), aConfig.getMaintenanceLeadTimeMillis(), mFrameworkId.getValue());
+
+        } else {
+            mMaintenanceCoordinator = null;
+        }
+
+        mInternPool = aConfig.isEnableCompactOffers() ? new StringInternPool(aConfig.getInternPoolSize()) : null;
+
+        mDeclinePolicy = new AdaptiveDeclinePolicy(
+                aConfig.getDeclineInitialRefuseSeconds(),
+                aConfig.getDeclineMaxRefuseSeconds(),
+                aConfig.getDeclineBackoffFactor()
+        );
 
         final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
 
@@ -99,142 +215,398 @@ public final class Scheduler implements Closeable {
 
         final String masterURL = aConfig.getMesosMasterURL();
 
-        if (StringUtils.isNotEmpty(masterURL)) {
+        if (masterURL.startsWith("zk")) {
+            mLeaderResolver = new ZooKeeperLeaderResolver();
 
-            if (masterURL.startsWith("zk")) {
-                mLeaderResolver = new ZooKeeperLeaderResolver();
+        } else {
+            mLeaderResolver = new HttpLeaderResolver(masterURL, mHttpClient);
+        }
 
-            } else {
-                mLeaderResolver = new HttpLeaderResolver(masterURL, mHttpClient);
-            }
+        if (mConfig.isEnableCallDispatcher()) {
+
+            mCallDispatcher = new CallDispatcher(
+                    this::postCall,
+                    this::getMesosMasterURL,
+                    mConfig.getCallQueueCapacity(),
+                    mConfig.getCallRateLimit(),
+                    mConfig.getCallRateBurst(),
+                    mConfig.getCallDispatcherThreads()
+            );
 
         } else {
-            throw new IllegalArgumentException("mesosMasterURL configuration is required");
+            mCallDispatcher = null;
         }
 
+        // The handler runs on the stream reading thread so timeouts need their own thread to fire while it is busy.
+        mTimerService = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            final Thread thread = new Thread(runnable, "mesos-scheduler-timer-" + mFrameworkId.getValue());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        final ThreadPoolExecutor asyncExecutor = new ThreadPoolExecutor(
+                Math.max(1, aConfig.getAsyncThreads()),
+                Math.max(1, aConfig.getAsyncThreads()),
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                (runnable) -> {
+                    final Thread thread = new Thread(runnable, "mesos-scheduler-async-" + mFrameworkId.getValue());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+        );
+
+        // Bursts of sends queue up behind a fixed number of threads which exit again once idle.
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        mAsyncExecutor = asyncExecutor;
     }
 
     private void init(ScheduledExecutorService aThreadExecutorService) throws IOException {
         // Discover the Mesos leader from ZK.
         mExecutorService = aThreadExecutorService;
+        mFrameworkInfo = createFrameworkInfo(mFrameworkId).build();
+        mRemote = new SchedulerRemote(this);
+
+        if (mConfig.getDiagnosticsPort() >= 0) {
+            mDiagnosticsServer = DiagnosticsServer.start(new InetSocketAddress(mConfig.getDiagnosticsBindAddress(), mConfig.getDiagnosticsPort()));
+            mDiagnosticsServer.register(this);
+        }
 
         try {
-            mFrameworkInfo = createFrameworkInfo(mFrameworkId).build();
 
-            final Protos.Call subscribeCall = Protos.Call.newBuilder()
-                    .setFrameworkId(mFrameworkId)
-                    .setType(Protos.Call.Type.SUBSCRIBE)
-                    .setSubscribe(
-                            Protos.Call.Subscribe.newBuilder()
-                                    .setFrameworkInfo(mFrameworkInfo)
-                    )
-                    .build();
+            synchronized (mSubscribeLock) {
+                subscribe(mLeaderResolver.resolveLeader());
+            }
+
+        } catch (URISyntaxException | InterruptedException | NoLeaderException aE) {
+            throw new IOException(aE);
+        }
+
+    }
+
+    /**
+     * Subscribes to the master and starts reading events from the new stream.  When the Scheduler was already
+     * subscribed to another master, its stream is closed once the new subscription has been accepted.
+     */
+    private void subscribe(String aLeader) throws URISyntaxException, IOException, InterruptedException {
+
+        final Protos.Call subscribeCall = Protos.Call.newBuilder()
+                .setFrameworkId(mFrameworkId)
+                .setType(Protos.Call.Type.SUBSCRIBE)
+                .setSubscribe(
+                        Protos.Call.Subscribe.newBuilder()
+                                .setFrameworkInfo(mFrameworkInfo)
+                )
+                .build();
+
+        final URI leaderUri = new URI(aLeader + "/api/v1/scheduler");
+
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(leaderUri)
+                .header("Content-Type", "application/x-protobuf")
+                .header("Accept", "application/x-protobuf")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(subscribeCall.toByteArray()))
+                .build();
+
+        log.info(String.format("Connecting to Mesos at: %s", leaderUri));
+
+        final HttpResponse<InputStream> response = mHttpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        if (response.statusCode() == 200) {
+            final InputStream previousStream = mEventStream;
+            final InputStream stream = response.body();
+
+            // The stream ID is published before the master so a call sent to the new master never carries the old ID.
+            mMesosStreamID = response.headers().firstValue("Mesos-Stream-Id").get();
+            log.info(String.format("Connected with Stream ID: %s", mMesosStreamID));
+            mMasterURL = aLeader;
+            mEventStream = stream;
+
+            if (previousStream != null) {
+                // Offers and inverse offers from the previous master can no longer be used.
+                mOfferTracker.clear();
+
+                if (mMaintenanceCoordinator != null) {
+                    mMaintenanceCoordinator.clear();
+                }
+
+                previousStream.close();
+            }
+
+            mClientThread = mExecutorService.schedule(() -> readEvents(stream), 0, TimeUnit.SECONDS);
+
+        } else {
+            final ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            response.body().transferTo(bo);
 
-            final String leader = mLeaderResolver.resolveLeader();
+            throw new IOException(String.format("Scheduler was unable to connect to mesos with exit code %d - %s", response.statusCode(), bo));
+        }
 
-            final URI leaderUri = new URI(leader + "/api/v1/scheduler");
+    }
 
-            final HttpRequest request = HttpRequest.newBuilder()
-                    .uri(leaderUri)
-                    .header("Content-Type", "application/x-protobuf")
-                    .header("Accept", "application/x-protobuf")
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(subscribeCall.toByteArray()))
-                    .build();
+    private void readEvents(InputStream aStream) {
 
-            log.info(String.format("Connecting to Mesos at: %s", leaderUri));
+        try {
+            final InputStream reader = new BufferedInputStream(aStream);
+            boolean subscribed = false;
 
-            final HttpResponse<InputStream> response = mHttpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            StringBuffer sb = new StringBuffer();
+            int data = reader.read();
 
-            if (response.statusCode() == 200) {
-                mMesosStreamID = response.headers().firstValue("Mesos-Stream-Id").get();
-                log.info(String.format("Connected with Stream ID: %s", mMesosStreamID));
-                mMasterURL = leader;
-                mRemote = new SchedulerRemote(this);
+            while (data != -1 && mRunning && aStream == mEventStream) {
 
-                mClientThread = mExecutorService.schedule(() -> {
+                if (data == 10) {
+                    // Contents of the StringBuffer should have the length of bytes to read.
+                    final long recordLength = Long.parseLong(sb.toString());
+                    final FrameReadEvent readEvent = new FrameReadEvent();
 
-                    try {
-                        final InputStream reader = new BufferedInputStream(response.body());
-                        boolean subscribed = false;
+                    readEvent.begin();
+                    final byte[] buffer = reader.readNBytes((int) recordLength);
+                    readEvent.end();
 
-                        StringBuffer sb = new StringBuffer();
-                        int data = reader.read();
+                    if (readEvent.shouldCommit()) {
+                        readEvent.frameworkId = mFrameworkId.getValue();
+                        readEvent.recordLength = recordLength;
+                        readEvent.commit();
+                    }
 
-                        while (data != -1 && mRunning) {
+                    final EventDecodeEvent decodeEvent = new EventDecodeEvent();
 
-                            if (data == 10) {
-                                // Contents of the StringBuffer should have the length of bytes to read.
-                                final long recordLength = Long.parseLong(sb.toString());
-                                final byte[] buffer = reader.readNBytes((int) recordLength);
+                    decodeEvent.begin();
+                    final Event event = Event.parseFrom(buffer);
+                    decodeEvent.end();
 
-                                final Event event = Event.parseFrom(buffer);
+                    if (decodeEvent.shouldCommit()) {
+                        decodeEvent.frameworkId = mFrameworkId.getValue();
+                        decodeEvent.eventType = event.getType().name();
+                        decodeEvent.recordLength = recordLength;
+                        decodeEvent.commit();
+                    }
 
-                                switch (event.getType()) {
+                    final HandlerDispatchEvent dispatchEvent = new HandlerDispatchEvent();
 
-                                    case SUBSCRIBED:
-                                        mSchedulerEventHandler.onSubscribe(mRemote, event.getSubscribed());
-                                        subscribed = true;
-                                        log.info(String.format("Connected to Master as FrameworkID: %s", mFrameworkId.getValue()));
-                                        break;
+                    dispatchEvent.begin();
 
-                                    case ERROR:
+                    switch (event.getType()) {
 
-                                        if (!subscribed) {
-                                            final String error = String.format("Error subscribing to Mesos: %s", event.getMessage());
-                                            log.error(error);
-                                            mSchedulerEventHandler.onTerminate(new IllegalStateException(error));
+                        case SUBSCRIBED:
+                            mLastHeartbeatNanos = System.nanoTime();
+                            mSchedulerEventHandler.onSubscribe(mRemote, event.getSubscribed());
+                            subscribed = true;
+                            log.info(String.format("Connected to Master as FrameworkID: %s", mFrameworkId.getValue()));
+                            break;
 
-                                        } else {
-                                            mSchedulerEventHandler.handleEvent(event);
-                                        }
+                        case OFFERS:
+                            final long offersReceived = System.nanoTime();
 
-                                        break;
+                            mOfferTracker.received(event.getOffers().getOffersList());
 
-                                    default:
-                                        mSchedulerEventHandler.handleEvent(event);
-                                        break;
-                                }
+                            if (mConfig.getOfferTimeBudgetMillis() > 0) {
+                                scheduleOfferBudget(event.getOffers());
+                            }
 
-                                sb = new StringBuffer();
-                                data = reader.read();
+                            if (mInternPool != null) {
+                                mSchedulerEventHandler.handleOffers(CompactOffer.from(event.getOffers().getOffersList(), mInternPool));
 
                             } else {
-                                sb.append(new String(new byte[]{(byte) data}));
-                                data = reader.read();
+                                mSchedulerEventHandler.handleEvent(event);
                             }
 
-                        }
+                            if (mConfig.getOfferTimeBudgetMillis() > 0 && System.nanoTime() - offersReceived > TimeUnit.MILLISECONDS.toNanos(mConfig.getOfferTimeBudgetMillis())) {
+                                mOfferTracker.handlerOverrun();
+                            }
 
-                        if (mRunning) {
-                            log.info(String.format("Scheduler '%s' has lost it's connection to Mesos '%s'", mFrameworkId, mMasterURL));
-                            mSchedulerEventHandler.onDisconnect();
+                            break;
 
-                        } else {
-                            mSchedulerEventHandler.onExit();
-                        }
+                        case HEARTBEAT:
+                            mLastHeartbeatNanos = System.nanoTime();
+                            mSchedulerEventHandler.handleEvent(event);
+                            break;
+
+                        case UPDATE:
+                            mTaskRegistry.statusUpdate(event.getUpdate().getStatus());
+                            mSchedulerEventHandler.handleEvent(event);
+                            break;
 
-                    } catch (IOException aE) {
-                        mSchedulerEventHandler.onTerminate(aE);
+                        case RESCIND:
+                            mOfferTracker.resolved(event.getRescind().getOfferId(), OfferTracker.OUTCOME_RESCIND);
+                            mSchedulerEventHandler.handleEvent(event);
+                            break;
 
-                    } finally {
-                        mSemaphore.release();
+                        case INVERSE_OFFERS:
+
+                            if (mMaintenanceCoordinator != null) {
+                                mMaintenanceCoordinator.received(event.getInverseOffers().getInverseOffersList());
+
+                            } else {
+                                mSchedulerEventHandler.handleEvent(event);
+                            }
+
+                            break;
+
+                        case RESCIND_INVERSE_OFFER:
+
+                            if (mMaintenanceCoordinator != null) {
+                                mMaintenanceCoordinator.rescinded(event.getRescindInverseOffer().getInverseOfferId());
+
+                            } else {
+                                mSchedulerEventHandler.handleEvent(event);
+                            }
+
+                            break;
+
+                        case ERROR:
+
+                            if (!subscribed) {
+                                final String error = String.format("Error subscribing to Mesos: %s", event.getMessage());
+                                log.error(error);
+                                mSchedulerEventHandler.onTerminate(new IllegalStateException(error));
+
+                            } else {
+                                mSchedulerEventHandler.handleEvent(event);
+                            }
+
+                            break;
+
+                        default:
+                            mSchedulerEventHandler.handleEvent(event);
+                            break;
+                    }
+
+                    dispatchEvent.end();
+
+                    if (dispatchEvent.shouldCommit()) {
+                        dispatchEvent.frameworkId = mFrameworkId.getValue();
+                        dispatchEvent.eventType = event.getType().name();
+
+                        switch (event.getType()) {
+
+                            case OFFERS:
+                                dispatchEvent.offerIds = CallSendEvent.joinOfferIds(
+                                        event.getOffers().getOffersList().stream().map(Offer::getId).collect(Collectors.toList())
+                                );
+                                break;
+
+                            case UPDATE:
+                                dispatchEvent.taskId = event.getUpdate().getStatus().getTaskId().getValue();
+                                break;
+                        }
+
+                        dispatchEvent.commit();
                     }
 
-                }, 0, TimeUnit.SECONDS);
+                    mEventPublisher.publish(event);
+
+                    sb = new StringBuffer();
+                    data = reader.read();
+
+                } else {
+                    sb.append(new String(new byte[]{(byte) data}));
+                    data = reader.read();
+                }
+
+            }
+
+            if (!endSubscription(aStream)) {
+                // Resubscribed to a new leader whose stream has its own reader.
+                return;
+            }
+
+            mOfferTracker.clear();
+
+            if (mMaintenanceCoordinator != null) {
+                // Inverse offers don't survive the subscription.
+                mMaintenanceCoordinator.clear();
+            }
+
+            // No more status updates will arrive for the tasks being killed.
+            mTaskRegistry.failTerminations(new IOException(String.format("Scheduler '%s' is no longer subscribed to Mesos", mFrameworkId.getValue())));
+            mEventPublisher.close();
+
+            if (mRunning) {
+                log.info(String.format("Scheduler '%s' has lost it's connection to Mesos '%s'", mFrameworkId, mMasterURL));
+                mSchedulerEventHandler.onDisconnect();
 
             } else {
-                final ByteArrayOutputStream bo = new ByteArrayOutputStream();
-                response.body().transferTo(bo);
+                mSchedulerEventHandler.onExit();
+            }
+
+        } catch (IOException aE) {
 
-                throw new IOException(String.format("Scheduler was unable to connect to mesos with exit code %d - %s", response.statusCode(), bo));
+            if (!endSubscription(aStream)) {
+                log.debug(String.format("Closed the stream from the previous leading master: %s", aE.getMessage()));
+
+            } else if (mRunning) {
+                mTaskRegistry.failTerminations(aE);
+                mEventPublisher.closeExceptionally(aE);
+                mSchedulerEventHandler.onTerminate(aE);
+
+            } else {
+                // The stream was closed underneath the reader by close().
+                mEventPublisher.close();
+                mSchedulerEventHandler.onExit();
             }
 
-        } catch (URISyntaxException | InterruptedException | NoLeaderException aE) {
-            throw new IOException(aE);
+        } finally {
+
+            if (aStream == mEventStream) {
+                mSemaphore.release();
+            }
+
+        }
+
+    }
+
+    /**
+     * Marks the subscription as ended so a failed call can no longer resubscribe the Scheduler, unless the stream has
+     * already been replaced by a subscription to a new leader.
+     */
+    private boolean endSubscription(InputStream aStream) {
+
+        synchronized (mSubscribeLock) {
+
+            if (aStream != mEventStream) {
+                return false;
+            }
+
+            mSubscriptionEnded = true;
+            return true;
         }
 
     }
 
+    private void scheduleOfferBudget(Event.Offers aOffers) {
+        final List<OfferID> batch = aOffers.getOffersList().stream().map(Offer::getId).collect(Collectors.toList());
+
+        mTimerService.schedule(() -> {
+            final List<OfferID> expired = mOfferTracker.expire(batch);
+
+            if (!expired.isEmpty()) {
+                log.warn(String.format("Declining %d of %d offers that were not accepted or declined within %dms", expired.size(), batch.size(), mConfig.getOfferTimeBudgetMillis()));
+
+                // Sent asynchronously so a slow master doesn't hold up other timers.
+                submitCall(
+                        createCall(Protos.Call.Type.DECLINE)
+                                .setDecline(
+                                        Protos.Call.Decline.newBuilder()
+                                                .addAllOfferIds(expired)
+                                                .setFilters(Filters.newBuilder().setRefuseSeconds(mConfig.getOfferBudgetRefuseSeconds()))
+                                )
+                                .build()
+                ).exceptionally((aThrowable) -> {
+                    log.error("Unable to decline expired offers", aThrowable);
+                    return null;
+                });
+
+            }
+
+        }, mConfig.getOfferTimeBudgetMillis(), TimeUnit.MILLISECONDS);
+
+    }
+
     public void join() throws InterruptedException {
         mSemaphore.acquire();
     }
@@ -331,8 +703,39 @@ public final class Scheduler implements Closeable {
     @Override
     public void close() throws IOException {
         mRunning = false;
-        mExecutorService.shutdown();
-        mClientThread.cancel(false);
+
+        // Either may be missing when init() failed.
+        if (mExecutorService != null) {
+            mExecutorService.shutdown();
+        }
+
+        if (mClientThread != null) {
+            mClientThread.cancel(false);
+        }
+
+        if (mEventStream != null) {
+            // Unblocks the reader so the subscription is dropped straight away.
+            mEventStream.close();
+        }
+
+        // Kill timeouts are discarded with the timer so nothing else would complete them.
+        mTaskRegistry.failTerminations(new IOException(String.format("Scheduler '%s' has been closed", mFrameworkId.getValue())));
+        mTaskRegistry.close();
+
+        if (mMaintenanceCoordinator != null) {
+            mMaintenanceCoordinator.close();
+        }
+
+        if (mCallDispatcher != null) {
+            mCallDispatcher.close();
+        }
+
+        mTimerService.shutdownNow();
+        mAsyncExecutor.shutdown();
+
+        if (mDiagnosticsServer != null) {
+            mDiagnosticsServer.close();
+        }
     }
 
     @Deprecated
@@ -344,24 +747,422 @@ public final class Scheduler implements Closeable {
         return mFrameworkInfo;
     }
 
-    protected void sendCall(Protos.Call aCall) {
+    public AdaptiveDeclinePolicy getDeclinePolicy() {
+        return mDeclinePolicy;
+    }
+
+    public TaskRegistry getTaskRegistry() {
+        return mTaskRegistry;
+    }
+
+    /**
+     * Events received from Mesos as a {@link java.util.concurrent.Flow.Publisher}.  Subscribers are completed when the
+     * Scheduler disconnects or exits.
+     */
+    public SchedulerEventPublisher getEventPublisher() {
+        return mEventPublisher;
+    }
+
+    public Optional<CallDispatcher> getCallDispatcher() {
+        return Optional.ofNullable(mCallDispatcher);
+    }
+
+    /**
+     * @return a snapshot of the Scheduler's internals.  Built from atomically published state so it is safe to call
+     * at any rate without slowing down the event stream.
+     */
+    public SchedulerDiagnostics getDiagnostics() {
+        final long lastHeartbeatNanos = mLastHeartbeatNanos;
+        final Map<String, Integer> inFlightCalls = new TreeMap<>();
+        final Protos.Call.Type[] types = Protos.Call.Type.values();
+
+        for (int i = 0; i < types.length; i++) {
+            final int inFlight = mInFlightCalls.get(i);
+
+            if (inFlight > 0) {
+                inFlightCalls.put(types[i].name(), inFlight);
+            }
+
+        }
+
+        return SchedulerDiagnostics.builder()
+                .timestamp(System.currentTimeMillis())
+                .frameworkID(mFrameworkId.getValue())
+                .masterURL(mMasterURL)
+                .streamID(mMesosStreamID)
+                .running(mRunning)
+                .millisSinceHeartbeat(lastHeartbeatNanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeartbeatNanos))
+                .callQueueDepth(mCallDispatcher != null ? mCallDispatcher.getQueueDepth() : -1)
+                .outstandingOffers(mOfferTracker.snapshot())
+                .inFlightCalls(inFlightCalls)
+                .recentSendErrors(mRecentSendErrors.get())
+                .build();
+
+    }
+
+    public Optional<DiagnosticsServer> getDiagnosticsServer() {
+        return Optional.ofNullable(mDiagnosticsServer);
+    }
+
+    TaskKiller getTaskKiller() {
+        return mTaskKiller;
+    }
+
+    public OfferTracker getOfferTracker() {
+        return mOfferTracker;
+    }
+
+    /**
+     * Sends the call on the calling thread, or queues it when the call dispatcher is enabled.  The returned future
+     * fails if the call was rejected or could not be sent.
+     */
+    protected CompletableFuture<Void> sendCall(Protos.Call aCall) {
+
+        if (mCallDispatcher != null) {
+            return sendWithRetry(aCall, mCallDispatcher::submit);
+
+        } else {
+
+            return sendWithRetry(aCall, (call) -> {
+
+                try {
+                    postCall(call);
+
+                    return CompletableFuture.completedFuture(null);
+
+                } catch (URISyntaxException | IOException | InterruptedException aE) {
+                    return CompletableFuture.failedFuture(aE);
+                }
+
+            });
+
+        }
+
+    }
+
+    /**
+     * Sends the call asynchronously and returns a future which completes once the master has accepted it.
+     */
+    CompletableFuture<Void> submitCall(Protos.Call aCall) {
+
+        if (mCallDispatcher != null) {
+            return sendWithRetry(aCall, mCallDispatcher::submit);
+
+        } else {
+
+            return sendWithRetry(aCall, (call) -> {
+                final CompletableFuture<Void> future = new CompletableFuture<>();
+
+                try {
+
+                    mAsyncExecutor.execute(() -> {
+
+                        try {
+                            postCall(call);
+                            future.complete(null);
+
+                        } catch (Exception aE) {
+                            future.completeExceptionally(aE);
+                        }
+
+                    });
+
+                } catch (RejectedExecutionException aE) {
+                    // The Scheduler has been closed.
+                    future.completeExceptionally(aE);
+                }
+
+                return future;
+            });
+
+        }
+
+    }
+
+    ScheduledExecutorService getTimerService() {
+        return mTimerService;
+    }
+
+    /**
+     * Runs work that may block, such as sending calls, off the stream reading and timer threads.
+     */
+    ExecutorService getAsyncExecutor() {
+        return mAsyncExecutor;
+    }
+
+    /**
+     * Sends the call with the given sender and retries idempotent calls when the leading master has changed or is
+     * unavailable.  Retries wait on the timer rather than the sending thread, and are handed back to the sender so a
+     * queued call goes back into its lane.
+     */
+    private CompletableFuture<Void> sendWithRetry(Protos.Call aCall, Function<Protos.Call, CompletableFuture<Void>> aSender) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        sendAttempt(aCall, aSender, result, 0, mConfig.getCallRetryBackoffMillis());
+
+        return result;
+    }
+
+    private void sendAttempt(Protos.Call aCall, Function<Protos.Call, CompletableFuture<Void>> aSender, CompletableFuture<Void> aResult, int aAttempt, long aBackoffMillis) {
+        final String streamID = mMesosStreamID;
+
+        aSender.apply(aCall).whenComplete((aIgnored, aThrowable) -> {
+
+            if (aThrowable == null) {
+                aResult.complete(null);
+                return;
+            }
+
+            final Throwable cause = aThrowable instanceof CompletionException && aThrowable.getCause() != null ? aThrowable.getCause() : aThrowable;
+
+            if (!(cause instanceof CallFailedException) || !((CallFailedException) cause).isLeaderChanged()) {
+                failCall(aCall, aResult, cause);
+                return;
+            }
+
+            final CallFailedException failure = (CallFailedException) cause;
+
+            try {
+
+                if (!isIdempotent(aCall.getType())) {
+
+                    // Follow the leader before failing so later calls are sent to it.
+                    mAsyncExecutor.execute(() -> {
+                        followLeader(streamID, failure);
+                        failCall(aCall, aResult, new CallFailedException(aCall.getType(), failure.getStatusCode(), true, String.format("%s call was not sent as the leading master has changed: %s", aCall.getType(), failure.getMessage()), failure.getCause()));
+                    });
+
+                } else if (aAttempt >= mConfig.getCallRetryAttempts()) {
+                    failCall(aCall, aResult, new CallFailedException(aCall.getType(), failure.getStatusCode(), true, String.format("Giving up on %s call after %d attempts: %s", aCall.getType(), aAttempt + 1, failure.getMessage()), failure.getCause()));
+
+                } else {
+                    log.warn(String.format("%s.  Retrying %s call in %dms", failure.getMessage(), aCall.getType(), aBackoffMillis));
+
+                    mTimerService.schedule(() -> {
+
+                        try {
+
+                            mAsyncExecutor.execute(() -> {
+                                followLeader(streamID, failure);
+                                sendAttempt(aCall, aSender, aResult, aAttempt + 1, Math.min(aBackoffMillis * 2, mConfig.getCallRetryMaxBackoffMillis()));
+                            });
+
+                        } catch (RejectedExecutionException aE) {
+                            aResult.completeExceptionally(aE);
+                        }
+
+                    }, aBackoffMillis, TimeUnit.MILLISECONDS);
+
+                }
+
+            } catch (RejectedExecutionException aE) {
+                // The Scheduler has been closed.
+                aResult.completeExceptionally(aE);
+            }
+
+        });
+
+    }
+
+    /**
+     * Fails a call that was rejected before being sent, logging and recording it the same way as a failed send.
+     */
+    CompletableFuture<Void> rejectCall(Protos.Call aCall, CallFailedException aFailure) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        failCall(aCall, result, aFailure);
+
+        return result;
+    }
+
+    private void failCall(Protos.Call aCall, CompletableFuture<Void> aResult, Throwable aThrowable) {
+
+        if (aThrowable instanceof URISyntaxException || aThrowable instanceof IOException) {
+            log.error(String.format("Error sending %s call to Mesos: %s", aCall.getType(), aThrowable.getMessage()));
+            recordSendError(aCall.getType(), (Exception) aThrowable);
+        }
+
+        aResult.completeExceptionally(aThrowable);
+    }
+
+    /**
+     * Resubscribes to the leading master when it has changed so the stream ID sent with calls belongs to the master
+     * they are sent to.
+     *
+     * @param aStreamID the stream ID the failed call was sent with.  Nothing is done if the Scheduler has already
+     *                  resubscribed since.
+     */
+    private void followLeader(String aStreamID, CallFailedException aFailure) {
+
+        synchronized (mSubscribeLock) {
+
+            if (!mRunning || mSubscriptionEnded || !Objects.equals(aStreamID, mMesosStreamID)) {
+                return;
+            }
+
+            String leader = mMasterURL;
+
+            if (aFailure.getLeaderURL().isPresent()) {
+                // A redirect has already told us where the leader is.
+                leader = aFailure.getLeaderURL().get();
+
+            } else {
+
+                try {
+                    leader = mLeaderResolver.resolveLeader();
+
+                } catch (NoLeaderException aE) {
+                    log.warn(String.format("Unable to resolve the leading Mesos master: %s", aE.getMessage()));
+                }
+
+            }
+
+            if (!leader.equals(mMasterURL)) {
+                log.info(String.format("Leading Mesos master changed from %s to %s", mMasterURL, leader));
+
+                try {
+                    subscribe(leader);
+
+                } catch (URISyntaxException | IOException aE) {
+                    log.warn(String.format("Unable to resubscribe to Mesos master at %s: %s", leader, aE.getMessage()));
+
+                } catch (InterruptedException aE) {
+                    Thread.currentThread().interrupt();
+                }
+
+            }
+
+        }
+
+    }
+
+    private void postCall(Protos.Call aCall) throws URISyntaxException, IOException, InterruptedException {
+        final int type = aCall.getType().ordinal();
+
+        mInFlightCalls.incrementAndGet(type);
 
         try {
-            final HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(mMasterURL + "/api/v1/scheduler"))
-                    .header("Content-Type", "application/x-protobuf")
-                    .header("Mesos-Stream-Id", mMesosStreamID)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(aCall.toByteArray()))
-                    .build();
+            postCallToMaster(aCall);
+
+        } finally {
+            mInFlightCalls.decrementAndGet(type);
+        }
+
+    }
+
+    private void recordSendError(Protos.Call.Type aType, Exception aException) {
+
+        final SchedulerDiagnostics.SendError error = new SchedulerDiagnostics.SendError(
+                System.currentTimeMillis(),
+                aType.name(),
+                aException instanceof CallFailedException ? ((CallFailedException) aException).getStatusCode() : 0,
+                aException.getMessage()
+        );
 
-            final HttpResponse<String> response = mHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        // Published as an immutable list so diagnostics can read it without locking.
+        mRecentSendErrors.updateAndGet((errors) -> {
+            final List<SchedulerDiagnostics.SendError> updated = new ArrayList<>(Math.min(errors.size() + 1, MAX_RECENT_SEND_ERRORS));
+
+            updated.add(error);
+            updated.addAll(errors.subList(0, Math.min(errors.size(), MAX_RECENT_SEND_ERRORS - 1)));
+
+            return Collections.unmodifiableList(updated);
+        });
+
+    }
+
+    /**
+     * Posts the call to the current master once.  A redirect, an unavailable master or a master that can't be reached
+     * fails with a {@link CallFailedException} whose {@link CallFailedException#isLeaderChanged()} is set so the call
+     * can be retried once the leader has been followed.
+     */
+    private void postCallToMaster(Protos.Call aCall) throws URISyntaxException, IOException, InterruptedException {
+        final CallSendEvent sendEvent = new CallSendEvent();
+        final String masterURL = mMasterURL;
+
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI(masterURL + "/api/v1/scheduler"))
+                .header("Content-Type", "application/x-protobuf")
+                .header("Mesos-Stream-Id", mMesosStreamID)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(aCall.toByteArray()))
+                .build();
+
+        final HttpResponse<String> response;
+
+        sendEvent.begin();
+
+        try {
+            response = mHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
-            if (response.statusCode() != 202 && response.statusCode() != 200) {
-                log.error("Error sending call to Mesos: " + response.body());
+        } catch (IOException | InterruptedException aE) {
+            sendEvent.end();
+
+            if (sendEvent.shouldCommit()) {
+                sendEvent.setCall(aCall);
+                sendEvent.error = aE.toString();
+                sendEvent.commit();
+            }
+
+            if (aE instanceof ConnectException || aE instanceof HttpConnectTimeoutException) {
+                throw new CallFailedException(aCall.getType(), 0, true, String.format("Unable to connect to Mesos master at %s", masterURL), aE);
             }
 
-        } catch (URISyntaxException | IOException | InterruptedException aE) {
-            aE.printStackTrace();
+            throw aE;
+        }
+
+        sendEvent.end();
+
+        if (sendEvent.shouldCommit()) {
+            sendEvent.setCall(aCall);
+            sendEvent.statusCode = response.statusCode();
+            sendEvent.commit();
+        }
+
+        switch (response.statusCode()) {
+
+            case 200:
+            case 202:
+                return;
+
+            case 307:
+                final Optional<String> location = response.headers().firstValue("Location");
+                String leaderURL = null;
+
+                if (location.isPresent()) {
+                    final URI leader = new URI(masterURL).resolve(location.get());
+                    leaderURL = String.format("%s://%s", leader.getScheme(), leader.getRawAuthority());
+                }
+
+                throw new CallFailedException(aCall.getType(), response.statusCode(), leaderURL, String.format("Mesos master at %s is no longer the leader", masterURL));
+
+            case 503:
+                throw new CallFailedException(aCall.getType(), response.statusCode(), true, String.format("Mesos master at %s responded with status %d", masterURL, response.statusCode()));
+
+            default:
+                throw new CallFailedException(aCall.getType(), response.statusCode(), false, String.format("Error sending %s call to Mesos with status %d: %s", aCall.getType(), response.statusCode(), response.body()));
+        }
+
+    }
+
+    static boolean isIdempotent(Protos.Call.Type aType) {
+
+        switch (aType) {
+
+            case ACKNOWLEDGE:
+            case ACKNOWLEDGE_OPERATION_STATUS:
+            case DECLINE:
+            case DECLINE_INVERSE_OFFERS:
+            case RECONCILE:
+            case RECONCILE_OPERATIONS:
+            case KILL:
+            case SHUTDOWN:
+            case REVIVE:
+            case SUPPRESS:
+            case TEARDOWN:
+                return true;
+
+            default:
+                return false;
         }
 
     }
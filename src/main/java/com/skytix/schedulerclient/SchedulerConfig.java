@@ -29,4 +29,52 @@ public class SchedulerConfig {
     private double minAllocatableGpu = 0.0;
     @Builder.Default
     private double minAllocatableDisk = 0.0;
+    @Builder.Default
+    private double declineInitialRefuseSeconds = 5;
+    @Builder.Default
+    private double declineMaxRefuseSeconds = 600;
+    @Builder.Default
+    private double declineBackoffFactor = 2;
+    private String journalPath; // Optional directory used to persist the FrameworkID and task state across restarts.
+    @Builder.Default
+    private int journalSegmentSize = 8 * 1024 * 1024;
+    @Builder.Default
+    private boolean enableCallDispatcher = false; // Send calls asynchronously through prioritised, bounded queues.
+    @Builder.Default
+    private int callQueueCapacity = 10000; // Per priority lane.
+    @Builder.Default
+    private double callRateLimit = 0; // Calls per second to each master.  0 disables rate limiting.
+    @Builder.Default
+    private int callRateBurst = 100;
+    @Builder.Default
+    private int callDispatcherThreads = 1;
+    @Builder.Default
+    private int callRetryAttempts = 5; // Retries of idempotent calls when the leading master changes.
+    @Builder.Default
+    private long callRetryBackoffMillis = 100;
+    @Builder.Default
+    private long callRetryMaxBackoffMillis = 5000;
+    @Builder.Default
+    private int asyncThreads = 8; // Threads sending calls off the event and timer threads.
+    @Builder.Default
+    private boolean enableCompactOffers = false; // Deliver offers to SchedulerEventHandler.handleOffers() as CompactOffers.  Use CompactOffer.toResource() to build operations.
+    @Builder.Default
+    private long internPoolSize = 100000;
+    @Builder.Default
+    private long offerTimeBudgetMillis = 0; // Offers not accepted or declined within this time are declined.  0 disables.
+    @Builder.Default
+    private double offerBudgetRefuseSeconds = 5;
+    @Builder.Default
+    private int killConcurrency = 64; // Maximum KILL calls in flight during a bulk kill.
+    @Builder.Default
+    private long killTimeoutMillis = 30000; // Time to wait for a terminal update before the KILL is re-issued.
+    @Builder.Default
+    private int killAttempts = 3;
+    private MaintenanceHandler maintenanceHandler; // Prepares for and accepts inverse offers.  Null passes them to handleEvent().
+    @Builder.Default
+    private long maintenanceLeadTimeMillis = 300000; // How long before an Unavailability starts to run the MaintenanceHandler.
+    @Builder.Default
+    private int diagnosticsPort = -1; // Port for the embedded DiagnosticsServer.  -1 disables it and 0 picks a free port.
+    @Builder.Default
+    private String diagnosticsBindAddress = "127.0.0.1"; // Only reachable locally unless bound to another interface, e.g. 0.0.0.0.
 }
@@ -0,0 +1,154 @@
+package com.skytix.schedulerclient;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point in time view of a {@link Scheduler}'s internals, built from state the Scheduler publishes as it runs.
+ * Taking a snapshot never blocks the event stream or the call path.
+ */
+@Builder
+@Getter
+public class SchedulerDiagnostics {
+    private final long timestamp;
+    private final String frameworkID;
+    private final String masterURL;
+    private final String streamID;
+    private final boolean running;
+    private final long millisSinceHeartbeat; // -1 if no heartbeat has been received.
+    private final int callQueueDepth; // -1 if the call dispatcher is disabled.
+    private final List<OutstandingOffer> outstandingOffers;
+    private final Map<String, Integer> inFlightCalls;
+    private final List<SendError> recentSendErrors;
+
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{");
+
+        json.append("\"timestamp\":").append(timestamp);
+        json.append(",\"frameworkID\":").append(quote(frameworkID));
+        json.append(",\"masterURL\":").append(quote(masterURL));
+        json.append(",\"streamID\":").append(quote(streamID));
+        json.append(",\"running\":").append(running);
+        json.append(",\"millisSinceHeartbeat\":").append(millisSinceHeartbeat);
+        json.append(",\"callQueueDepth\":").append(callQueueDepth);
+
+        json.append(",\"outstandingOffers\":[");
+
+        for (int i = 0; i < outstandingOffers.size(); i++) {
+            final OutstandingOffer offer = outstandingOffers.get(i);
+
+            json.append(i > 0 ? "," : "")
+                    .append("{\"offerID\":").append(quote(offer.getOfferID()))
+                    .append(",\"agentID\":").append(quote(offer.getAgentID()))
+                    .append(",\"ageMillis\":").append(offer.getAgeMillis())
+                    .append("}");
+        }
+
+        json.append("],\"inFlightCalls\":{");
+
+        boolean first = true;
+
+        for (Map.Entry<String, Integer> entry : inFlightCalls.entrySet()) {
+            json.append(first ? "" : ",").append(quote(entry.getKey())).append(":").append(entry.getValue());
+            first = false;
+        }
+
+        json.append("},\"recentSendErrors\":[");
+
+        for (int i = 0; i < recentSendErrors.size(); i++) {
+            final SendError error = recentSendErrors.get(i);
+
+            json.append(i > 0 ? "," : "")
+                    .append("{\"timestamp\":").append(error.getTimestamp())
+                    .append(",\"callType\":").append(quote(error.getCallType()))
+                    .append(",\"statusCode\":").append(error.getStatusCode())
+                    .append(",\"message\":").append(quote(error.getMessage()))
+                    .append("}");
+        }
+
+        return json.append("]}").toString();
+    }
+
+    private static String quote(String aValue) {
+
+        if (aValue == null) {
+            return "null";
+        }
+
+        final StringBuilder quoted = new StringBuilder(aValue.length() + 2).append('"');
+
+        for (int i = 0; i < aValue.length(); i++) {
+            final char c = aValue.charAt(i);
+
+            switch (c) {
+
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+
+                default:
+
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+
+                    } else {
+                        quoted.append(c);
+                    }
+
+            }
+
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    @Getter
+    public static class OutstandingOffer {
+        private final String offerID;
+        private final String agentID;
+        private final long ageMillis;
+
+        OutstandingOffer(String aOfferID, String aAgentID, long aAgeMillis) {
+            offerID = aOfferID;
+            agentID = aAgentID;
+            ageMillis = aAgeMillis;
+        }
+
+    }
+
+    @Getter
+    public static class SendError {
+        private final long timestamp;
+        private final String callType;
+        private final int statusCode; // 0 if no response was received.
+        private final String message;
+
+        SendError(long aTimestamp, String aCallType, int aStatusCode, String aMessage) {
+            timestamp = aTimestamp;
+            callType = aCallType;
+            statusCode = aStatusCode;
+            message = aMessage;
+        }
+
+    }
+
+}
@@ -1,5 +1,9 @@
 package com.skytix.schedulerclient;
 
+import com.skytix.schedulerclient.mesos.CompactOffer;
+
+import java.util.List;
+
 import static org.apache.mesos.v1.scheduler.Protos.Event;
 
 public interface SchedulerEventHandler {
@@ -8,4 +12,5 @@ public interface SchedulerEventHandler {
     default void onDisconnect() {};
     default void onExit() {};
     default void handleEvent(Event aEvent) {};
+    default void handleOffers(List<CompactOffer> aOffers) {}; // Used instead of handleEvent() for OFFERS when enableCompactOffers is set.
 }
@@ -0,0 +1,205 @@
+package com.skytix.schedulerclient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.mesos.v1.scheduler.Protos.Event;
+
+/**
+ * Publishes the events received by a {@link Scheduler} to reactive subscribers.
+ *
+ * Every subscriber gets its own bounded buffer and delivery thread so a slow subscriber never blocks the thread reading
+ * from Mesos or any other subscriber.  Events that arrive while a subscriber's buffer is full are dropped for that
+ * subscriber and counted, or with {@link Overflow#FAIL} the subscriber is failed instead.  Subscribers only receive
+ * events published after they subscribe, and subscribers arriving after the publisher has closed are completed straight
+ * away.
+ */
+@Slf4j
+public final class SchedulerEventPublisher implements Flow.Publisher<Event> {
+    public static final int DEFAULT_BUFFER_CAPACITY = Flow.defaultBufferSize();
+
+    private static final AtomicInteger mThreadCount = new AtomicInteger();
+
+    /**
+     * What happens to a subscriber whose buffer is full when an event arrives.
+     */
+    public enum Overflow {
+        DROP, // The event is dropped for the subscriber and counted.
+        FAIL // The subscriber receives onError and no further events.
+    }
+
+    private final List<FilteredPublisher> mPublishers = new CopyOnWriteArrayList<>();
+    private final ExecutorService mExecutorService = Executors.newCachedThreadPool((runnable) -> {
+        final Thread thread = new Thread(runnable, "mesos-event-publisher-" + mThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final LongAdder mDropped = new LongAdder();
+    private boolean mClosed = false;
+    private Throwable mCloseError;
+
+    SchedulerEventPublisher() {
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Event> aSubscriber) {
+        subscribe(aSubscriber, EnumSet.allOf(Event.Type.class), DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public void subscribe(Flow.Subscriber<? super Event> aSubscriber, Set<Event.Type> aTypes) {
+        subscribe(aSubscriber, aTypes, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Subscribes to events of the given types only, buffering up to the given number of events for the subscriber.
+     */
+    public void subscribe(Flow.Subscriber<? super Event> aSubscriber, Set<Event.Type> aTypes, int aBufferCapacity) {
+        subscribe(aSubscriber, aTypes, aBufferCapacity, Overflow.DROP);
+    }
+
+    public void subscribe(Flow.Subscriber<? super Event> aSubscriber, Set<Event.Type> aTypes, int aBufferCapacity, Overflow aOverflow) {
+        final Throwable closeError;
+
+        synchronized (mPublishers) {
+
+            if (!mClosed) {
+                final FilteredPublisher publisher = new FilteredPublisher(mExecutorService, aTypes, aBufferCapacity, aOverflow);
+
+                publisher.mPublisher.subscribe(aSubscriber);
+                mPublishers.add(publisher);
+                return;
+            }
+
+            closeError = mCloseError;
+        }
+
+        // The delivery threads have been shut down so the subscriber is completed on the caller's thread.
+        aSubscriber.onSubscribe(new Flow.Subscription() {
+
+            @Override
+            public void request(long aCount) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+        });
+
+        if (closeError != null) {
+            aSubscriber.onError(closeError);
+
+        } else {
+            aSubscriber.onComplete();
+        }
+
+    }
+
+    public int getSubscriberCount() {
+        return (int) mPublishers.stream().filter((publisher) -> publisher.mPublisher.hasSubscribers()).count();
+    }
+
+    /**
+     * @return the number of events dropped across all subscribers because their buffers were full.
+     */
+    public long getDropped() {
+        return mDropped.sum();
+    }
+
+    /**
+     * @return the number of events dropped for the subscriber because its buffer was full.
+     */
+    public long getDropped(Flow.Subscriber<? super Event> aSubscriber) {
+
+        for (FilteredPublisher publisher : mPublishers) {
+
+            if (publisher.mPublisher.isSubscribed(aSubscriber)) {
+                return publisher.mDropped.sum();
+            }
+
+        }
+
+        return 0;
+    }
+
+    void publish(Event aEvent) {
+
+        for (FilteredPublisher publisher : mPublishers) {
+
+            if (!publisher.mPublisher.hasSubscribers()) {
+                // The subscriber has cancelled.
+                publisher.mPublisher.close();
+                mPublishers.remove(publisher);
+
+            } else if (publisher.mTypes.contains(aEvent.getType())) {
+
+                final int lag = publisher.mPublisher.offer(aEvent, (subscriber, event) -> {
+                    mDropped.increment();
+                    publisher.mDropped.increment();
+                    log.warn(String.format("Dropped %s event for a slow subscriber.  %d events dropped for it so far.", event.getType(), publisher.mDropped.sum()));
+                    return false;
+                });
+
+                if (lag < 0 && publisher.mOverflow == Overflow.FAIL) {
+                    publisher.mPublisher.closeExceptionally(new IllegalStateException(String.format(
+                            "Dropped %s event as the subscriber's buffer of %d events was full", aEvent.getType(), publisher.mPublisher.getMaxBufferCapacity()
+                    )));
+                    mPublishers.remove(publisher);
+                }
+
+            }
+
+        }
+
+    }
+
+    void close() {
+
+        synchronized (mPublishers) {
+            mClosed = true;
+            mPublishers.forEach((publisher) -> publisher.mPublisher.close());
+            mPublishers.clear();
+            mExecutorService.shutdown();
+        }
+
+    }
+
+    void closeExceptionally(Throwable aError) {
+
+        synchronized (mPublishers) {
+
+            if (!mClosed) {
+                mClosed = true;
+                mCloseError = aError;
+            }
+
+            mPublishers.forEach((publisher) -> publisher.mPublisher.closeExceptionally(aError));
+            mPublishers.clear();
+            mExecutorService.shutdown();
+        }
+
+    }
+
+    private static final class FilteredPublisher {
+        private final SubmissionPublisher<Event> mPublisher;
+        private final Set<Event.Type> mTypes;
+        private final Overflow mOverflow;
+        private final LongAdder mDropped = new LongAdder();
+
+        private FilteredPublisher(Executor aExecutor, Set<Event.Type> aTypes, int aBufferCapacity, Overflow aOverflow) {
+            mPublisher = new SubmissionPublisher<>(aExecutor, aBufferCapacity);
+            mTypes = aTypes.isEmpty() ? EnumSet.noneOf(Event.Type.class) : EnumSet.copyOf(aTypes);
+            mOverflow = aOverflow;
+        }
+
+    }
+
+}
@@ -1,14 +1,29 @@
 package com.skytix.schedulerclient;
 
+import com.skytix.schedulerclient.mesos.CompactOffer;
 import com.skytix.schedulerclient.mesos.MesosConstants;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.mesos.v1.Protos;
 import static org.apache.mesos.v1.Protos.*;
 import static org.apache.mesos.v1.scheduler.Protos.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends calls to Mesos on behalf of a {@link Scheduler}.  Each call returns a future which completes once the master
+ * has accepted the call, or fails with a {@link CallFailedException} if the master rejected it or could not be reached.
+ */
+@Slf4j
 public final class SchedulerRemote {
     private final Scheduler mScheduler;
 
@@ -33,14 +48,19 @@ public final class SchedulerRemote {
         return mScheduler.getFrameworkInfo();
     }
 
-    public void accept(List<OfferID> aOfferIDs, List<Offer.Operation> aOperations) {
-        accept(aOfferIDs, aOperations, null);
+    public CompletableFuture<Void> accept(List<OfferID> aOfferIDs, List<Offer.Operation> aOperations) {
+        return accept(aOfferIDs, aOperations, null);
     }
 
-    public void accept(List<OfferID> aOfferIDs, List<Offer.Operation> aOperations, Double aRefuseSeconds) {
+    /**
+     * Accepts the offers that are still outstanding.  Offers that have been rescinded, declined or have exceeded the offer
+     * time budget are left out of the call, and if none remain the returned future fails without anything being sent.
+     */
+    public CompletableFuture<Void> accept(List<OfferID> aOfferIDs, List<Offer.Operation> aOperations, Double aRefuseSeconds) {
+        final Map<OfferID, AgentID> outstanding = mScheduler.getOfferTracker().resolved(aOfferIDs, OfferTracker.OUTCOME_ACCEPT);
 
         final Call.Accept.Builder acceptBuilder = Call.Accept.newBuilder()
-                .addAllOfferIds(aOfferIDs)
+                .addAllOfferIds(outstanding.keySet())
                 .addAllOperations(aOperations);
 
         if (aRefuseSeconds != null) {
@@ -52,17 +72,32 @@ public final class SchedulerRemote {
 
         }
 
-        mScheduler.sendCall(
-                mScheduler.createCall(Call.Type.ACCEPT)
-                        .setAccept(acceptBuilder)
-                        .build()
-        );
+        final Call acceptCall = mScheduler.createCall(Call.Type.ACCEPT)
+                .setAccept(acceptBuilder)
+                .build();
+
+        if (outstanding.isEmpty()) {
+            // Logged and recorded in the diagnostics as callers written against the void accept() ignore the future.
+            return mScheduler.rejectCall(acceptCall, new CallFailedException(Call.Type.ACCEPT, 0, false, String.format("None of the %d offers being accepted are outstanding.  They may have been rescinded or exceeded the offer time budget.", aOfferIDs.size())));
+        }
+
+        if (outstanding.size() < aOfferIDs.size()) {
+            log.warn(String.format("Dropping %d offers from the accept that are no longer outstanding.  They may have been rescinded or exceeded the offer time budget.", aOfferIDs.size() - outstanding.size()));
+        }
+
+        // The agents are in use again so their next unusable offer starts from the initial refuse time.
+        new HashSet<>(outstanding.values()).forEach(mScheduler.getDeclinePolicy()::reset);
+
+        mScheduler.getTaskRegistry().launched(aOperations);
+
+        return mScheduler.sendCall(acceptCall);
 
     }
 
-    public void acknowledge(Protos.TaskStatusOrBuilder aTaskStatus) {
+    public CompletableFuture<Void> acknowledge(Protos.TaskStatusOrBuilder aTaskStatus) {
+        mScheduler.getTaskRegistry().acknowledged(aTaskStatus);
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 mScheduler.createCall(Call.Type.ACKNOWLEDGE)
                         .setAcknowledge(
                                 Call.Acknowledge.newBuilder()
@@ -74,9 +109,9 @@ public final class SchedulerRemote {
 
     }
 
-    public void acknowledgeOperationStatus(Protos.OperationStatusOrBuilder aOperationStatus) {
+    public CompletableFuture<Void> acknowledgeOperationStatus(Protos.OperationStatusOrBuilder aOperationStatus) {
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.ACKNOWLEDGE_OPERATION_STATUS)
                         .setAcknowledgeOperationStatus(
                                 Call.AcknowledgeOperationStatus.newBuilder()
@@ -89,11 +124,11 @@ public final class SchedulerRemote {
 
     }
 
-    public void decline(List<OfferID> aOfferIDs) {
-        decline(aOfferIDs, null);
+    public CompletableFuture<Void> decline(List<OfferID> aOfferIDs) {
+        return decline(aOfferIDs, null);
     }
 
-    public void decline(List<org.apache.mesos.v1.Protos.OfferID> aOfferIDs, Double aRefuseSeconds) {
+    public CompletableFuture<Void> decline(List<org.apache.mesos.v1.Protos.OfferID> aOfferIDs, Double aRefuseSeconds) {
 
         final Call.Decline.Builder declineBuilder = Call.Decline.newBuilder()
                 .addAllOfferIds(aOfferIDs);
@@ -107,7 +142,9 @@ public final class SchedulerRemote {
 
         }
 
-        mScheduler.sendCall(
+        mScheduler.getOfferTracker().resolved(aOfferIDs, OfferTracker.OUTCOME_DECLINE);
+
+        return mScheduler.sendCall(
                 createCall(Call.Type.DECLINE)
                         .setDecline(declineBuilder)
                         .build()
@@ -115,9 +152,103 @@ public final class SchedulerRemote {
 
     }
 
-    public void kill(TaskID aTaskID, AgentID aAgentID) {
+    public CompletableFuture<Void> acceptInverseOffers(List<OfferID> aInverseOfferIDs) {
+        return acceptInverseOffers(aInverseOfferIDs, null);
+    }
+
+    public CompletableFuture<Void> acceptInverseOffers(List<OfferID> aInverseOfferIDs, Double aRefuseSeconds) {
+
+        final Call.AcceptInverseOffers.Builder acceptBuilder = Call.AcceptInverseOffers.newBuilder()
+                .addAllInverseOfferIds(aInverseOfferIDs);
+
+        if (aRefuseSeconds != null) {
+
+            acceptBuilder.setFilters(
+                    Filters.newBuilder()
+                            .setRefuseSeconds(aRefuseSeconds)
+            );
+
+        }
+
+        return mScheduler.sendCall(
+                createCall(Call.Type.ACCEPT_INVERSE_OFFERS)
+                        .setAcceptInverseOffers(acceptBuilder)
+                        .build()
+        );
+
+    }
+
+    public CompletableFuture<Void> declineInverseOffers(List<OfferID> aInverseOfferIDs) {
+        return declineInverseOffers(aInverseOfferIDs, null);
+    }
+
+    public CompletableFuture<Void> declineInverseOffers(List<OfferID> aInverseOfferIDs, Double aRefuseSeconds) {
+
+        final Call.DeclineInverseOffers.Builder declineBuilder = Call.DeclineInverseOffers.newBuilder()
+                .addAllInverseOfferIds(aInverseOfferIDs);
+
+        if (aRefuseSeconds != null) {
+
+            declineBuilder.setFilters(
+                    Filters.newBuilder()
+                            .setRefuseSeconds(aRefuseSeconds)
+            );
+
+        }
+
+        return mScheduler.sendCall(
+                createCall(Call.Type.DECLINE_INVERSE_OFFERS)
+                        .setDeclineInverseOffers(declineBuilder)
+                        .build()
+        );
+
+    }
+
+    /**
+     * Declines offers the framework cannot use, escalating the refuse filter for each agent and role according to the
+     * Scheduler's {@link AdaptiveDeclinePolicy}.  Offers sharing a refuse duration are declined in a single call.
+     */
+    public CompletableFuture<Void> declineUnusable(List<Offer> aOffers) {
+        final AdaptiveDeclinePolicy declinePolicy = mScheduler.getDeclinePolicy();
+        final Map<Double, List<OfferID>> offersByRefuseSeconds = new TreeMap<>();
+
+        for (Offer offer : aOffers) {
+            offersByRefuseSeconds.computeIfAbsent(declinePolicy.nextRefuseSeconds(offer), k -> new ArrayList<>()).add(offer.getId());
+        }
+
+        return declineByRefuseSeconds(offersByRefuseSeconds);
+    }
+
+    /**
+     * Declines offers held in their compact form.  Takes a Collection as a List parameter would clash with
+     * {@link #declineUnusable(List)} after erasure.
+     */
+    public CompletableFuture<Void> declineUnusable(Collection<CompactOffer> aOffers) {
+        final AdaptiveDeclinePolicy declinePolicy = mScheduler.getDeclinePolicy();
+        final Map<Double, List<OfferID>> offersByRefuseSeconds = new TreeMap<>();
+
+        for (CompactOffer offer : aOffers) {
+            offersByRefuseSeconds.computeIfAbsent(declinePolicy.nextRefuseSeconds(offer), k -> new ArrayList<>()).add(offer.getId());
+        }
+
+        return declineByRefuseSeconds(offersByRefuseSeconds);
+    }
+
+    private CompletableFuture<Void> declineByRefuseSeconds(Map<Double, List<OfferID>> aOffersByRefuseSeconds) {
+        final List<CompletableFuture<Void>> declines = new ArrayList<>();
 
-        mScheduler.sendCall(
+        aOffersByRefuseSeconds.forEach((refuseSeconds, offerIDs) -> declines.add(decline(offerIDs, refuseSeconds)));
+
+        return CompletableFuture.allOf(declines.toArray(new CompletableFuture<?>[0]));
+    }
+
+    public AdaptiveDeclinePolicy getDeclinePolicy() {
+        return mScheduler.getDeclinePolicy();
+    }
+
+    public CompletableFuture<Void> kill(TaskID aTaskID, AgentID aAgentID) {
+
+        return mScheduler.sendCall(
                 createCall(Call.Type.KILL)
                         .setKill(
                                 Call.Kill.newBuilder()
@@ -127,9 +258,34 @@ public final class SchedulerRemote {
         );
     }
 
-    public void reconcile(List<Call.Reconcile.Task> aTasks) {
+    /**
+     * Kills the tasks concurrently, re-issuing any KILL that hasn't taken effect within the configured timeout.
+     *
+     * @return a future which completes with the terminal status of every task once they have all been seen in UPDATE
+     * events, or exceptionally with a {@link java.util.concurrent.TimeoutException} if a task could not be killed.
+     */
+    public CompletableFuture<List<TaskStatus>> killTasks(Map<TaskID, AgentID> aTasks) {
+        return mScheduler.getTaskKiller().kill(aTasks);
+    }
+
+    /**
+     * Kills every non-terminal task the {@link TaskRegistry} knows to be running on the agent.
+     *
+     * @see #killTasks(Map)
+     */
+    public CompletableFuture<List<TaskStatus>> drainAgent(AgentID aAgentID) {
+        final Map<TaskID, AgentID> tasks = new LinkedHashMap<>();
 
-        mScheduler.sendCall(
+        for (TaskStatus status : mScheduler.getTaskRegistry().getActiveTasks(aAgentID)) {
+            tasks.put(status.getTaskId(), aAgentID);
+        }
+
+        return killTasks(tasks);
+    }
+
+    public CompletableFuture<Void> reconcile(List<Call.Reconcile.Task> aTasks) {
+
+        return mScheduler.sendCall(
                 createCall(Call.Type.RECONCILE)
                         .setReconcile(
                                 Call.Reconcile.newBuilder()
@@ -139,9 +295,43 @@ public final class SchedulerRemote {
         );
     }
 
-    public void reconcileOperations(List<Call.ReconcileOperations.Operation> aOperations) {
+    /**
+     * Performs explicit reconciliation of every non-terminal task known to the {@link TaskRegistry}.  After a restart
+     * from the state journal this only asks the master about the tasks the framework already knows about.
+     */
+    public CompletableFuture<Void> reconcileKnownTasks() {
+        final List<Call.Reconcile.Task> tasks = new ArrayList<>();
+
+        for (TaskStatus status : mScheduler.getTaskRegistry().getTasks()) {
+
+            if (!TaskRegistry.isTerminal(status.getState())) {
+                final Call.Reconcile.Task.Builder task = Call.Reconcile.Task.newBuilder().setTaskId(status.getTaskId());
+
+                if (status.hasAgentId()) {
+                    task.setAgentId(status.getAgentId());
+                }
+
+                tasks.add(task.build());
+            }
+
+        }
+
+        if (!tasks.isEmpty()) {
+            return reconcile(tasks);
+
+        } else {
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+    public TaskRegistry getTaskRegistry() {
+        return mScheduler.getTaskRegistry();
+    }
+
+    public CompletableFuture<Void> reconcileOperations(List<Call.ReconcileOperations.Operation> aOperations) {
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.RECONCILE_OPERATIONS)
                 .setReconcileOperations(
                         Call.ReconcileOperations.newBuilder()
@@ -152,13 +342,14 @@ public final class SchedulerRemote {
 
     }
 
-    public void revive() {
-        revive(Collections.emptyList());
+    public CompletableFuture<Void> revive() {
+        return revive(Collections.emptyList());
     }
 
-    public void revive(List<String> aRoles) {
+    public CompletableFuture<Void> revive(List<String> aRoles) {
+        mScheduler.getDeclinePolicy().reset(aRoles);
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.REVIVE)
                 .setRevive(
                         Call.Revive.newBuilder()
@@ -169,13 +360,13 @@ public final class SchedulerRemote {
 
     }
 
-    public void suppress() {
-        suppress(Collections.emptyList());
+    public CompletableFuture<Void> suppress() {
+        return suppress(Collections.emptyList());
     }
 
-    public void suppress(List<String> aRoles) {
+    public CompletableFuture<Void> suppress(List<String> aRoles) {
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.SUPPRESS)
                         .setSuppress(
                                 Call.Suppress.newBuilder()
@@ -188,9 +379,9 @@ public final class SchedulerRemote {
 
     }
 
-    public void message(Call.Message message) {
+    public CompletableFuture<Void> message(Call.Message message) {
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.MESSAGE)
                         .setMessage(message)
                         .build()
@@ -199,7 +390,7 @@ public final class SchedulerRemote {
 
     }
 
-    public void updateFrameworkOfferFilters(OfferFilters aOfferFilters) {
+    public CompletableFuture<Void> updateFrameworkOfferFilters(OfferFilters aOfferFilters) {
         final Call.UpdateFramework.Builder update = Call.UpdateFramework.newBuilder();
         final FrameworkInfo.Builder frameworkInfo = mScheduler.getFrameworkInfo().toBuilder();
 
@@ -208,19 +399,21 @@ public final class SchedulerRemote {
 
         update.setFrameworkInfo(frameworkInfo);
 
-        updateFramework(update.build());
+        mScheduler.getDeclinePolicy().reset();
+        return updateFramework(update.build());
     }
 
-    public void resetFrameworkOfferFilters() {
+    public CompletableFuture<Void> resetFrameworkOfferFilters() {
         final Call.UpdateFramework.Builder update = Call.UpdateFramework.newBuilder();
         final FrameworkInfo.Builder frameworkInfo = mScheduler.getFrameworkInfo().toBuilder();
 
-        updateFramework(update.setFrameworkInfo(frameworkInfo).build());
+        mScheduler.getDeclinePolicy().reset();
+        return updateFramework(update.setFrameworkInfo(frameworkInfo).build());
     }
 
-    public void updateFramework(Call.UpdateFramework aUpdate) {
+    public CompletableFuture<Void> updateFramework(Call.UpdateFramework aUpdate) {
 
-        mScheduler.sendCall(
+        return mScheduler.sendCall(
                 createCall(Call.Type.UPDATE_FRAMEWORK)
                 .setUpdateFramework(aUpdate).build()
         );
@@ -228,8 +421,18 @@ public final class SchedulerRemote {
     }
 
     public void teardown() throws IOException {
-        mScheduler.sendCall(mScheduler.createCall(Call.Type.TEARDOWN).build());
-        mScheduler.close();
+
+        try {
+            // Wait for the teardown to reach the master as closing the Scheduler stops any queued calls.
+            mScheduler.submitCall(mScheduler.createCall(Call.Type.TEARDOWN).build()).get();
+
+        } catch (InterruptedException | ExecutionException aE) {
+            throw new IOException("Unable to teardown framework", aE);
+
+        } finally {
+            mScheduler.close();
+        }
+
     }
 
     private Call.Builder createCall(Call.Type aType) {
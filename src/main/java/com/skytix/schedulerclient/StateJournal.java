@@ -0,0 +1,318 @@
+package com.skytix.schedulerclient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of scheduler state stored in memory-mapped segment files.
+ *
+ * Each record is written as <code>[int length][byte type][int crc32][payload]</code> and a zero length marks the end of
+ * the data in a segment.  When a segment fills up, a new segment is started with a snapshot of the live state and the
+ * older segments are deleted, so the journal never grows beyond the live state plus one segment of history.
+ *
+ * The journal holds an exclusive lock on a lock file in its directory while it is open so two schedulers can never
+ * write to the same journal.
+ */
+@Slf4j
+final class StateJournal implements Closeable {
+    static final byte TYPE_FRAMEWORK_ID = 1;
+    static final byte TYPE_TASK_STATUS = 2;
+    static final byte TYPE_ACK_PENDING = 3;
+    static final byte TYPE_ACK_DONE = 4;
+    static final byte TYPE_TASK_REMOVED = 5;
+
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String LOCK_FILE = "journal.lock";
+
+    private final Path mDirectory;
+    private final int mSegmentSize;
+    private final List<Path> mSegments = new ArrayList<>();
+
+    private FileChannel mLockChannel;
+    private FileLock mLock;
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private long mSegmentSequence;
+    private boolean mClosed;
+
+    private StateJournal(Path aDirectory, int aSegmentSize) {
+        mDirectory = aDirectory;
+        mSegmentSize = aSegmentSize;
+    }
+
+    public static StateJournal open(Path aDirectory, int aSegmentSize) throws IOException {
+
+        if (aSegmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format("Journal segment size %d is too small", aSegmentSize));
+        }
+
+        Files.createDirectories(aDirectory);
+
+        final StateJournal journal = new StateJournal(aDirectory, aSegmentSize);
+
+        try {
+            journal.lock();
+            journal.listSegments();
+
+        } catch (IOException aE) {
+            journal.close();
+            throw aE;
+        }
+
+        return journal;
+    }
+
+    private void lock() throws IOException {
+        final Path lockFile = mDirectory.resolve(LOCK_FILE);
+
+        mLockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            mLock = mLockChannel.tryLock();
+
+        } catch (OverlappingFileLockException aE) {
+            mLock = null;
+        }
+
+        if (mLock == null) {
+            throw new IOException(String.format("State journal %s is locked by another scheduler", lockFile));
+        }
+
+    }
+
+    private void listSegments() throws IOException {
+
+        try (Stream<Path> files = Files.list(mDirectory)) {
+
+            mSegments.addAll(
+                    files.filter((file) -> {
+                        final String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList())
+            );
+
+        }
+
+        if (!mSegments.isEmpty()) {
+            mSegmentSequence = parseSequence(mSegments.get(mSegments.size() - 1));
+        }
+
+    }
+
+    /**
+     * Replays every record in the journal in the order they were written.  Replay stops at the first torn or corrupt
+     * record of a segment.
+     */
+    public synchronized void replay(RecordConsumer aConsumer) throws IOException {
+
+        for (Path segment : mSegments) {
+
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                    final int length = buffer.getInt();
+
+                    if (length <= 0 || length > buffer.remaining() - Byte.BYTES - Integer.BYTES) {
+                        break;
+                    }
+
+                    final byte type = buffer.get();
+                    final int crc = buffer.getInt();
+                    final byte[] payload = new byte[length];
+
+                    buffer.get(payload);
+
+                    if (checksum(payload) != crc) {
+                        log.warn(String.format("Corrupt record found in journal segment %s.  Skipping the remainder of the segment.", segment));
+                        break;
+                    }
+
+                    aConsumer.accept(type, payload);
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Appends a record to the active segment.
+     *
+     * @return false if the active segment does not have enough room and the journal needs to be compacted.
+     */
+    public synchronized boolean append(byte aType, byte[] aPayload) throws IOException {
+        ensureOpen();
+
+        if (mBuffer == null) {
+            return false;
+        }
+
+        if (mBuffer.remaining() < RECORD_HEADER_SIZE + aPayload.length + Integer.BYTES) {
+            return false;
+        }
+
+        writeRecord(mBuffer, aType, aPayload);
+
+        return true;
+    }
+
+    /**
+     * Starts a new segment containing only the supplied snapshot of the live state and removes every older segment.
+     */
+    public synchronized void compact(List<Record> aSnapshot) throws IOException {
+        ensureOpen();
+
+        int snapshotSize = Integer.BYTES;
+
+        for (Record record : aSnapshot) {
+            snapshotSize += RECORD_HEADER_SIZE + record.getPayload().length;
+        }
+
+        // Leave at least as much room for new records as the snapshot itself takes up.
+        final int segmentSize = Math.max(mSegmentSize, snapshotSize * 2);
+        final Path segment = mDirectory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, ++mSegmentSequence, SEGMENT_SUFFIX));
+        final FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+        for (Record record : aSnapshot) {
+            writeRecord(buffer, record.getType(), record.getPayload());
+        }
+
+        buffer.force();
+        closeActiveSegment();
+
+        for (Path oldSegment : mSegments) {
+            Files.deleteIfExists(oldSegment);
+        }
+
+        mSegments.clear();
+        mSegments.add(segment);
+        mChannel = channel;
+        mBuffer = buffer;
+
+        log.debug(String.format("Compacted state journal to %s with %d records", segment, aSnapshot.size()));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mClosed = true;
+
+        try {
+            closeActiveSegment();
+
+        } finally {
+
+            if (mLock != null) {
+                mLock.release();
+                mLock = null;
+            }
+
+            if (mLockChannel != null) {
+                mLockChannel.close();
+                mLockChannel = null;
+            }
+
+        }
+
+    }
+
+    private void ensureOpen() throws IOException {
+
+        if (mClosed) {
+            throw new IOException(String.format("State journal %s is closed", mDirectory));
+        }
+
+    }
+
+    private void closeActiveSegment() throws IOException {
+
+        if (mBuffer != null) {
+            mBuffer.force();
+            mBuffer = null;
+        }
+
+        if (mChannel != null) {
+            mChannel.close();
+            mChannel = null;
+        }
+
+    }
+
+    private static void writeRecord(MappedByteBuffer aBuffer, byte aType, byte[] aPayload) {
+        final int position = aBuffer.position();
+
+        // The length is written last so a partially written record is never visible to replay.
+        aBuffer.position(position + Integer.BYTES);
+        aBuffer.put(aType);
+        aBuffer.putInt(checksum(aPayload));
+        aBuffer.put(aPayload);
+
+        final int end = aBuffer.position();
+
+        aBuffer.putInt(position, aPayload.length);
+        aBuffer.position(end);
+    }
+
+    private static int checksum(byte[] aPayload) {
+        final CRC32 crc = new CRC32();
+        crc.update(aPayload);
+
+        return (int) crc.getValue();
+    }
+
+    private static long parseSequence(Path aSegment) {
+        final String name = aSegment.getFileName().toString();
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+
+        } catch (NumberFormatException aE) {
+            return 0;
+        }
+
+    }
+
+    public interface RecordConsumer {
+        void accept(byte aType, byte[] aPayload) throws IOException;
+    }
+
+    public static final class Record {
+        private final byte mType;
+        private final byte[] mPayload;
+
+        public Record(byte aType, byte[] aPayload) {
+            mType = aType;
+            mPayload = aPayload;
+        }
+
+        public byte getType() {
+            return mType;
+        }
+
+        public byte[] getPayload() {
+            return mPayload;
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.skytix.schedulerclient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.apache.mesos.v1.Protos.*;
+import static org.apache.mesos.v1.scheduler.Protos.*;
+
+/**
+ * Kills tasks in bulk with at most {@link SchedulerConfig#getKillConcurrency()} KILL calls in flight.  A task only
+ * counts as killed once the {@link TaskRegistry} sees a terminal status for it.  Kills that haven't taken effect within
+ * {@link SchedulerConfig#getKillTimeoutMillis()} are re-issued until {@link SchedulerConfig#getKillAttempts()} is
+ * reached.
+ */
+@Slf4j
+final class TaskKiller {
+    private final Scheduler mScheduler;
+    private final Semaphore mInFlight;
+    private final Queue<Kill> mPending = new ConcurrentLinkedQueue<>();
+    private final long mTimeoutMillis;
+    private final int mAttempts;
+
+    TaskKiller(Scheduler aScheduler, SchedulerConfig aConfig) {
+        mScheduler = aScheduler;
+        mInFlight = new Semaphore(Math.max(1, aConfig.getKillConcurrency()));
+        mTimeoutMillis = aConfig.getKillTimeoutMillis();
+        mAttempts = Math.max(1, aConfig.getKillAttempts());
+    }
+
+    /**
+     * @return a future which completes with the terminal status of every task, or exceptionally with a
+     * {@link TimeoutException} if any task survived all of its kill attempts.
+     */
+    CompletableFuture<List<TaskStatus>> kill(Map<TaskID, AgentID> aTasks) {
+        final List<CompletableFuture<TaskStatus>> results = new ArrayList<>(aTasks.size());
+
+        aTasks.forEach((taskID, agentID) -> {
+            final Kill kill = new Kill(taskID, agentID);
+
+            results.add(kill.mResult);
+            mPending.add(kill);
+        });
+
+        dispatch();
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply((ignored) -> {
+            final List<TaskStatus> statuses = new ArrayList<>(results.size());
+
+            for (CompletableFuture<TaskStatus> result : results) {
+                statuses.add(result.join());
+            }
+
+            return statuses;
+        });
+
+    }
+
+    int getPendingKills() {
+        return mPending.size();
+    }
+
+    private void dispatch() {
+
+        while (!mPending.isEmpty() && mInFlight.tryAcquire()) {
+            final Kill kill = mPending.poll();
+
+            if (kill == null) {
+                mInFlight.release();
+
+            } else if (kill.mResult.isDone()) {
+                // The task died while the kill was queued.
+                mInFlight.release();
+
+            } else {
+                send(kill);
+            }
+
+        }
+
+    }
+
+    private void send(Kill aKill) {
+        aKill.mAttempt++;
+
+        final CompletableFuture<Void> sent;
+
+        try {
+
+            sent = mScheduler.submitCall(
+                    mScheduler.createCall(Call.Type.KILL)
+                            .setKill(
+                                    Call.Kill.newBuilder()
+                                            .setTaskId(aKill.mTaskID)
+                                            .setAgentId(aKill.mAgentID)
+                            ).build()
+            );
+
+        } catch (RuntimeException aE) {
+            mInFlight.release();
+            fail(aKill, aE);
+            return;
+        }
+
+        sent.whenComplete((ignored, aThrowable) -> {
+
+            if (aThrowable != null) {
+                log.warn(String.format("Unable to send KILL for task %s (attempt %d of %d)", aKill.mTaskID.getValue(), aKill.mAttempt, mAttempts), aThrowable);
+            }
+
+            mInFlight.release();
+            scheduleTimeout(aKill);
+            dispatch();
+        });
+
+    }
+
+    private void scheduleTimeout(Kill aKill) {
+
+        if (aKill.mResult.isDone()) {
+            return;
+        }
+
+        try {
+
+            mScheduler.getTimerService().schedule(() -> {
+
+                if (aKill.mResult.isDone()) {
+                    return;
+                }
+
+                if (aKill.mAttempt < mAttempts) {
+                    log.info(String.format("Task %s has not terminated.  Re-issuing KILL.", aKill.mTaskID.getValue()));
+                    mPending.add(aKill);
+                    dispatch();
+
+                } else {
+
+                    fail(aKill, new TimeoutException(
+                            String.format("Task %s did not terminate after %d kill attempts", aKill.mTaskID.getValue(), aKill.mAttempt)
+                    ));
+
+                }
+
+            }, mTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        } catch (RejectedExecutionException aE) {
+            // The Scheduler has been closed.
+            fail(aKill, aE);
+        }
+
+    }
+
+    private void fail(Kill aKill, Throwable aThrowable) {
+        // Only this kill gives up.  The registry's termination is shared with other callers still waiting on the task.
+        aKill.mResult.completeExceptionally(aThrowable);
+    }
+
+    private final class Kill {
+        private final TaskID mTaskID;
+        private final AgentID mAgentID;
+        private final CompletableFuture<TaskStatus> mResult = new CompletableFuture<>();
+        private volatile int mAttempt;
+
+        private Kill(TaskID aTaskID, AgentID aAgentID) {
+            mTaskID = aTaskID;
+            mAgentID = aAgentID;
+
+            // Registered before the first KILL is sent so the terminal update can't be missed.  The termination fails
+            // when the Scheduler closes or its subscription ends.
+            mScheduler.getTaskRegistry().awaitTermination(aTaskID).whenComplete((status, aThrowable) -> {
+
+                if (aThrowable != null) {
+                    mResult.completeExceptionally(aThrowable);
+
+                } else {
+                    mResult.complete(status);
+                }
+
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,317 @@
+package com.skytix.schedulerclient;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.mesos.v1.Protos.*;
+
+/**
+ * Keeps the last known status of every task launched by the framework along with the status updates that are still
+ * waiting to be acknowledged.  When a {@link StateJournal} is supplied every change is written through to it so the
+ * state can be restored after a restart.
+ */
+@Slf4j
+public final class TaskRegistry {
+    private static final Set<TaskState> TERMINAL_STATES = EnumSet.of(
+            TaskState.TASK_FINISHED,
+            TaskState.TASK_FAILED,
+            TaskState.TASK_KILLED,
+            TaskState.TASK_ERROR,
+            TaskState.TASK_LOST,
+            TaskState.TASK_DROPPED,
+            TaskState.TASK_GONE,
+            TaskState.TASK_GONE_BY_OPERATOR
+    );
+
+    private final ConcurrentMap<String, TaskStatus> mTasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TaskStatus> mPendingAcknowledgements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<TaskStatus>> mTerminations = new ConcurrentHashMap<>();
+    private final StateJournal mJournal;
+    private volatile String mFrameworkID;
+
+    TaskRegistry() {
+        mJournal = null;
+    }
+
+    private TaskRegistry(StateJournal aJournal) {
+        mJournal = aJournal;
+    }
+
+    static TaskRegistry recover(StateJournal aJournal) throws IOException {
+        final TaskRegistry registry = new TaskRegistry(aJournal);
+
+        try {
+            aJournal.replay(registry::apply);
+            aJournal.compact(registry.snapshot());
+
+        } catch (IOException | RuntimeException aE) {
+            // Release the journal lock so the recovery can be retried.
+            aJournal.close();
+            throw aE;
+        }
+
+        log.info(String.format("Recovered %d tasks and %d pending acknowledgements from the state journal", registry.mTasks.size(), registry.mPendingAcknowledgements.size()));
+
+        return registry;
+    }
+
+    public static boolean isTerminal(TaskState aState) {
+        return TERMINAL_STATES.contains(aState);
+    }
+
+    public Optional<String> getFrameworkID() {
+        return Optional.ofNullable(mFrameworkID);
+    }
+
+    public Optional<TaskStatus> getTaskStatus(TaskID aTaskID) {
+        return Optional.ofNullable(mTasks.get(aTaskID.getValue()));
+    }
+
+    public List<TaskStatus> getTasks() {
+        return new ArrayList<>(mTasks.values());
+    }
+
+    /**
+     * @return the tasks on the agent which have not yet reached a terminal state.
+     */
+    public List<TaskStatus> getActiveTasks(AgentID aAgentID) {
+        final List<TaskStatus> tasks = new ArrayList<>();
+
+        for (TaskStatus status : mTasks.values()) {
+
+            if (status.getAgentId().equals(aAgentID) && !isTerminal(status.getState())) {
+                tasks.add(status);
+            }
+
+        }
+
+        return tasks;
+    }
+
+    public List<TaskStatus> getPendingAcknowledgements() {
+        return new ArrayList<>(mPendingAcknowledgements.values());
+    }
+
+    /**
+     * Returns a future which completes with the first terminal status, or TASK_UNKNOWN, received for the task.  A task
+     * already known to be terminal completes immediately.
+     */
+    public CompletableFuture<TaskStatus> awaitTermination(TaskID aTaskID) {
+        final String taskId = aTaskID.getValue();
+        final CompletableFuture<TaskStatus> future = mTerminations.computeIfAbsent(taskId, (id) -> new CompletableFuture<>());
+        final TaskStatus status = mTasks.get(taskId);
+
+        // The status may have arrived before the future was registered.
+        if (status != null && isTerminal(status.getState())) {
+            completeTermination(status);
+        }
+
+        return future;
+    }
+
+    void frameworkID(String aFrameworkID) {
+
+        if (!aFrameworkID.equals(mFrameworkID)) {
+            mFrameworkID = aFrameworkID;
+            journal(StateJournal.TYPE_FRAMEWORK_ID, aFrameworkID.getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    void launched(TaskInfo aTaskInfo) {
+
+        final TaskStatus status = TaskStatus.newBuilder()
+                .setTaskId(aTaskInfo.getTaskId())
+                .setAgentId(aTaskInfo.getAgentId())
+                .setState(TaskState.TASK_STAGING)
+                .build();
+
+        mTasks.put(status.getTaskId().getValue(), status);
+        journal(StateJournal.TYPE_TASK_STATUS, status.toByteArray());
+    }
+
+    void launched(List<Offer.Operation> aOperations) {
+
+        for (Offer.Operation operation : aOperations) {
+
+            switch (operation.getType()) {
+
+                case LAUNCH:
+                    operation.getLaunch().getTaskInfosList().forEach(this::launched);
+                    break;
+
+                case LAUNCH_GROUP:
+                    operation.getLaunchGroup().getTaskGroup().getTasksList().forEach(this::launched);
+                    break;
+            }
+
+        }
+
+    }
+
+    void statusUpdate(TaskStatus aStatus) {
+        final String taskId = aStatus.getTaskId().getValue();
+
+        if (aStatus.hasUuid()) {
+            mTasks.put(taskId, aStatus);
+            mPendingAcknowledgements.put(taskId, aStatus);
+            journal(StateJournal.TYPE_ACK_PENDING, aStatus.toByteArray());
+
+        } else if (isTerminal(aStatus.getState())) {
+            // Nothing to acknowledge so the task is finished with.
+            if (mTasks.remove(taskId) != null) {
+                journal(StateJournal.TYPE_TASK_REMOVED, aStatus.getTaskId().toByteArray());
+            }
+
+        } else {
+            mTasks.put(taskId, aStatus);
+            journal(StateJournal.TYPE_TASK_STATUS, aStatus.toByteArray());
+        }
+
+        // Completed after the maps are updated so a concurrent awaitTermination sees one or the other.
+        if (isTerminal(aStatus.getState()) || aStatus.getState() == TaskState.TASK_UNKNOWN) {
+            completeTermination(aStatus);
+        }
+
+    }
+
+    void acknowledged(TaskStatusOrBuilder aStatus) {
+        final String taskId = aStatus.getTaskId().getValue();
+        final TaskStatus pending = mPendingAcknowledgements.get(taskId);
+
+        if (pending != null && pending.getUuid().equals(aStatus.getUuid())) {
+            mPendingAcknowledgements.remove(taskId);
+            journal(StateJournal.TYPE_ACK_DONE, aStatus.getTaskId().toByteArray());
+
+            if (isTerminal(pending.getState()) && mTasks.remove(taskId) != null) {
+                journal(StateJournal.TYPE_TASK_REMOVED, aStatus.getTaskId().toByteArray());
+            }
+
+        }
+
+    }
+
+    void close() throws IOException {
+
+        if (mJournal != null) {
+            mJournal.close();
+        }
+
+    }
+
+    /**
+     * Fails every outstanding termination once no further status updates will be received.
+     */
+    void failTerminations(Throwable aThrowable) {
+
+        for (String taskId : mTerminations.keySet()) {
+            final CompletableFuture<TaskStatus> future = mTerminations.remove(taskId);
+
+            if (future != null) {
+                future.completeExceptionally(aThrowable);
+            }
+
+        }
+
+    }
+
+    int getPendingTerminations() {
+        return mTerminations.size();
+    }
+
+    private void completeTermination(TaskStatus aStatus) {
+        final CompletableFuture<TaskStatus> future = mTerminations.remove(aStatus.getTaskId().getValue());
+
+        if (future != null) {
+            future.complete(aStatus);
+        }
+
+    }
+
+    private void apply(byte aType, byte[] aPayload) throws InvalidProtocolBufferException {
+
+        switch (aType) {
+
+            case StateJournal.TYPE_FRAMEWORK_ID:
+                mFrameworkID = new String(aPayload, StandardCharsets.UTF_8);
+                break;
+
+            case StateJournal.TYPE_TASK_STATUS: {
+                final TaskStatus status = TaskStatus.parseFrom(aPayload);
+                mTasks.put(status.getTaskId().getValue(), status);
+                break;
+            }
+
+            case StateJournal.TYPE_ACK_PENDING: {
+                final TaskStatus status = TaskStatus.parseFrom(aPayload);
+                mTasks.put(status.getTaskId().getValue(), status);
+                mPendingAcknowledgements.put(status.getTaskId().getValue(), status);
+                break;
+            }
+
+            case StateJournal.TYPE_ACK_DONE:
+                mPendingAcknowledgements.remove(TaskID.parseFrom(aPayload).getValue());
+                break;
+
+            case StateJournal.TYPE_TASK_REMOVED: {
+                final String taskId = TaskID.parseFrom(aPayload).getValue();
+                mTasks.remove(taskId);
+                mPendingAcknowledgements.remove(taskId);
+                break;
+            }
+
+            default:
+                log.warn(String.format("Ignoring unknown state journal record type %d", aType));
+                break;
+        }
+
+    }
+
+    private List<StateJournal.Record> snapshot() {
+        final List<StateJournal.Record> records = new ArrayList<>();
+
+        if (mFrameworkID != null) {
+            records.add(new StateJournal.Record(StateJournal.TYPE_FRAMEWORK_ID, mFrameworkID.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        for (TaskStatus status : mTasks.values()) {
+            records.add(new StateJournal.Record(StateJournal.TYPE_TASK_STATUS, status.toByteArray()));
+        }
+
+        for (TaskStatus status : mPendingAcknowledgements.values()) {
+            records.add(new StateJournal.Record(StateJournal.TYPE_ACK_PENDING, status.toByteArray()));
+        }
+
+        return records;
+    }
+
+    private void journal(byte aType, byte[] aPayload) {
+
+        if (mJournal != null) {
+
+            try {
+
+                synchronized (mJournal) {
+
+                    if (!mJournal.append(aType, aPayload)) {
+                        mJournal.compact(snapshot());
+                    }
+
+                }
+
+            } catch (IOException aE) {
+                log.error("Unable to write to the state journal", aE);
+            }
+
+        }
+
+    }
+
+}
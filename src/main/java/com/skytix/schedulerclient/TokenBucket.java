@@ -0,0 +1,58 @@
+package com.skytix.schedulerclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple token bucket which refills at a fixed rate up to a maximum burst size.
+ */
+final class TokenBucket {
+    private final double mRatePerNano;
+    private final double mBurst;
+
+    private double mTokens;
+    private long mLastRefillNanos;
+
+    TokenBucket(double aRatePerSecond, int aBurst, double aInitialTokens) {
+
+        if (aRatePerSecond <= 0 || aBurst < 1) {
+            throw new IllegalArgumentException(String.format("Invalid rate limit: rate=%s burst=%d", aRatePerSecond, aBurst));
+        }
+
+        mRatePerNano = aRatePerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurst = aBurst;
+        mTokens = Math.min(aInitialTokens, aBurst);
+        mLastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until a token is available.
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos;
+
+        while ((waitNanos = tryAcquire(System.nanoTime())) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the number of nanoseconds until the next token becomes available.
+     */
+    synchronized long tryAcquire(long aNowNanos) {
+        mTokens = Math.min(mBurst, mTokens + (aNowNanos - mLastRefillNanos) * mRatePerNano);
+        mLastRefillNanos = aNowNanos;
+
+        if (mTokens >= 1) {
+            mTokens -= 1;
+            return 0;
+
+        } else {
+            return Math.max(1, (long) Math.ceil((1 - mTokens) / mRatePerNano));
+        }
+
+    }
+
+}
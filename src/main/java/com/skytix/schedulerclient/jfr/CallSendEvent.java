@@ -0,0 +1,66 @@
+package com.skytix.schedulerclient.jfr;
+
+import jdk.jfr.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.mesos.v1.Protos.OfferID;
+import static org.apache.mesos.v1.scheduler.Protos.Call;
+
+@Name("com.skytix.schedulerclient.CallSend")
+@Label("Mesos Call Send")
+@Category({"Mesos", "Scheduler"})
+@Description("Round-trip of a scheduler call posted to the master")
+@StackTrace(false)
+public class CallSendEvent extends Event {
+
+    @Label("Framework ID")
+    public String frameworkId;
+
+    @Label("Call Type")
+    public String callType;
+
+    @Label("HTTP Status")
+    @Description("Zero when the call failed before a response was received")
+    public int statusCode;
+
+    @Label("Error")
+    public String error;
+
+    @Label("Offer IDs")
+    public String offerIds;
+
+    @Label("Task ID")
+    public String taskId;
+
+    public void setCall(Call aCall) {
+        frameworkId = aCall.getFrameworkId().getValue();
+        callType = aCall.getType().name();
+
+        switch (aCall.getType()) {
+
+            case ACCEPT:
+                offerIds = joinOfferIds(aCall.getAccept().getOfferIdsList());
+                break;
+
+            case DECLINE:
+                offerIds = joinOfferIds(aCall.getDecline().getOfferIdsList());
+                break;
+
+            case KILL:
+                taskId = aCall.getKill().getTaskId().getValue();
+                break;
+
+            case ACKNOWLEDGE:
+                taskId = aCall.getAcknowledge().getTaskId().getValue();
+                break;
+        }
+
+    }
+
+    public static String joinOfferIds(List<OfferID> aOfferIDs) {
+        return aOfferIDs.stream().map(OfferID::getValue).collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.skytix.schedulerclient.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.skytix.schedulerclient.EventDecode")
+@Label("Mesos Event Decode")
+@Category({"Mesos", "Scheduler"})
+@Description("Time spent decoding a protobuf event received from the master")
+@StackTrace(false)
+public class EventDecodeEvent extends Event {
+
+    @Label("Framework ID")
+    public String frameworkId;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Record Length")
+    @DataAmount
+    public long recordLength;
+
+}
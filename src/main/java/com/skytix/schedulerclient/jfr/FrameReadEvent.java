@@ -0,0 +1,19 @@
+package com.skytix.schedulerclient.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.skytix.schedulerclient.FrameRead")
+@Label("Mesos Frame Read")
+@Category({"Mesos", "Scheduler"})
+@Description("Time spent reading a RecordIO framed event from the subscription stream")
+@StackTrace(false)
+public class FrameReadEvent extends Event {
+
+    @Label("Framework ID")
+    public String frameworkId;
+
+    @Label("Record Length")
+    @DataAmount
+    public long recordLength;
+
+}
@@ -0,0 +1,24 @@
+package com.skytix.schedulerclient.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.skytix.schedulerclient.HandlerDispatch")
+@Label("Scheduler Handler Dispatch")
+@Category({"Mesos", "Scheduler"})
+@Description("Time spent inside the SchedulerEventHandler for a single event")
+@StackTrace(false)
+public class HandlerDispatchEvent extends Event {
+
+    @Label("Framework ID")
+    public String frameworkId;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Offer IDs")
+    public String offerIds;
+
+    @Label("Task ID")
+    public String taskId;
+
+}
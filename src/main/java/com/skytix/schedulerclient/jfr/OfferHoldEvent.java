@@ -0,0 +1,24 @@
+package com.skytix.schedulerclient.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.skytix.schedulerclient.OfferHold")
+@Label("Mesos Offer Hold")
+@Category({"Mesos", "Scheduler"})
+@Description("Time an offer was held by the framework from its arrival until it was accepted, declined or rescinded")
+@StackTrace(false)
+public class OfferHoldEvent extends Event {
+
+    @Label("Framework ID")
+    public String frameworkId;
+
+    @Label("Offer ID")
+    public String offerId;
+
+    @Label("Agent ID")
+    public String agentId;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
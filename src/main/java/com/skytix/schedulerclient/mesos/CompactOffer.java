@@ -0,0 +1,385 @@
+package com.skytix.schedulerclient.mesos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.mesos.v1.Protos.*;
+
+/**
+ * Memory efficient copy of an {@link Offer}.
+ *
+ * Strings that repeat across offers are shared through a {@link StringInternPool} and resources are flattened into
+ * primitive arrays.  Only the fields needed to make placement decisions are kept: identifiers, hostname, allocation
+ * role, resources and attributes.  {@link #getId()} returns an OfferID which can be passed straight to
+ * accept/decline.
+ *
+ * Resources carrying more than a name, value and allocation role, such as reservations, persistent volumes or a
+ * resource provider, are also kept in their original form so {@link #toResource(int)} can return the exact Resource to
+ * use in an {@link Offer.Operation}.
+ */
+public final class CompactOffer {
+    private static final long[] NO_RANGES = new long[0];
+    private static final String[] NO_ITEMS = new String[0];
+
+    private final String mOfferId;
+    private final String mAgentId;
+    private final String mHostname;
+    private final String mRole;
+
+    private final String[] mResourceNames;
+    private final Value.Type[] mResourceTypes;
+    private final String[] mResourceRoles;
+    private final double[] mResourceScalars;
+    // Ranges of all resources as begin/end pairs.  Resource i owns mRanges[mRangeOffsets[i]..mRangeOffsets[i + 1]).
+    private final int[] mRangeOffsets;
+    private final long[] mRanges;
+    private final String[][] mResourceSets;
+    // Resources that can't be rebuilt from the flattened fields.  Null when every resource can be.
+    private final Resource[] mDetailedResources;
+
+    private final String[] mAttributeNames;
+    private final String[] mAttributeValues;
+    private final double[] mAttributeScalars;
+
+    private CompactOffer(Offer aOffer, StringInternPool aPool) {
+        mOfferId = aOffer.getId().getValue();
+        mAgentId = aPool.intern(aOffer.getAgentId().getValue());
+        mHostname = aPool.intern(aOffer.getHostname());
+        mRole = aPool.intern(aOffer.hasAllocationInfo() ? aOffer.getAllocationInfo().getRole() : null);
+
+        final int resourceCount = aOffer.getResourcesCount();
+        final List<Long> ranges = new ArrayList<>();
+        String[][] resourceSets = null;
+        Resource[] detailedResources = null;
+
+        mResourceNames = new String[resourceCount];
+        mResourceTypes = new Value.Type[resourceCount];
+        mResourceRoles = new String[resourceCount];
+        mResourceScalars = new double[resourceCount];
+        mRangeOffsets = new int[resourceCount + 1];
+
+        for (int i = 0; i < resourceCount; i++) {
+            final Resource resource = aOffer.getResources(i);
+
+            mResourceNames[i] = aPool.intern(resource.getName());
+            mResourceTypes[i] = resource.getType();
+            mResourceRoles[i] = aPool.intern(getResourceRole(resource));
+            mRangeOffsets[i] = ranges.size();
+
+            switch (resource.getType()) {
+
+                case SCALAR:
+                    mResourceScalars[i] = resource.getScalar().getValue();
+                    break;
+
+                case RANGES:
+
+                    for (Value.Range range : resource.getRanges().getRangeList()) {
+                        ranges.add(range.getBegin());
+                        ranges.add(range.getEnd());
+                    }
+
+                    break;
+
+                case SET:
+
+                    if (resourceSets == null) {
+                        resourceSets = new String[resourceCount][];
+                    }
+
+                    resourceSets[i] = resource.getSet().getItemList().stream().map(aPool::intern).toArray(String[]::new);
+                    break;
+            }
+
+        }
+
+        mRangeOffsets[resourceCount] = ranges.size();
+        mRanges = ranges.isEmpty() ? NO_RANGES : ranges.stream().mapToLong(Long::longValue).toArray();
+        mResourceSets = resourceSets;
+
+        for (int i = 0; i < resourceCount; i++) {
+            final Resource resource = aOffer.getResources(i);
+
+            if (!toPlainResource(i).equals(resource)) {
+
+                if (detailedResources == null) {
+                    detailedResources = new Resource[resourceCount];
+                }
+
+                detailedResources[i] = resource;
+            }
+
+        }
+
+        mDetailedResources = detailedResources;
+
+        final int attributeCount = aOffer.getAttributesCount();
+
+        mAttributeNames = new String[attributeCount];
+        mAttributeValues = new String[attributeCount];
+        mAttributeScalars = new double[attributeCount];
+
+        for (int i = 0; i < attributeCount; i++) {
+            final Attribute attribute = aOffer.getAttributes(i);
+
+            mAttributeNames[i] = aPool.intern(attribute.getName());
+            mAttributeScalars[i] = Double.NaN;
+
+            switch (attribute.getType()) {
+
+                case SCALAR:
+                    mAttributeScalars[i] = attribute.getScalar().getValue();
+                    break;
+
+                case TEXT:
+                    mAttributeValues[i] = aPool.intern(attribute.getText().getValue());
+                    break;
+
+                case RANGES:
+                    mAttributeValues[i] = aPool.intern(
+                            attribute.getRanges().getRangeList().stream()
+                                    .map((range) -> String.format("[%d-%d]", range.getBegin(), range.getEnd()))
+                                    .collect(Collectors.joining(","))
+                    );
+                    break;
+
+                case SET:
+                    mAttributeValues[i] = aPool.intern(String.join(",", attribute.getSet().getItemList()));
+                    break;
+            }
+
+        }
+
+    }
+
+    public static CompactOffer from(Offer aOffer, StringInternPool aPool) {
+        return new CompactOffer(aOffer, aPool);
+    }
+
+    public static List<CompactOffer> from(List<Offer> aOffers, StringInternPool aPool) {
+        final List<CompactOffer> offers = new ArrayList<>(aOffers.size());
+
+        for (Offer offer : aOffers) {
+            offers.add(new CompactOffer(offer, aPool));
+        }
+
+        return offers;
+    }
+
+    public OfferID getId() {
+        return OfferID.newBuilder().setValue(mOfferId).build();
+    }
+
+    public AgentID getAgentId() {
+        return AgentID.newBuilder().setValue(mAgentId).build();
+    }
+
+    public String getHostname() {
+        return mHostname;
+    }
+
+    /**
+     * @return the role the offer was allocated to or null if the master did not supply one.
+     */
+    public String getRole() {
+        return mRole;
+    }
+
+    public int getResourceCount() {
+        return mResourceNames.length;
+    }
+
+    public String getResourceName(int aIndex) {
+        return mResourceNames[aIndex];
+    }
+
+    /**
+     * @return the role of the resource's most refined reservation, or its allocation role when unreserved.
+     */
+    public String getResourceRole(int aIndex) {
+        return mResourceRoles[aIndex];
+    }
+
+    public double getScalar(int aIndex) {
+        return mResourceScalars[aIndex];
+    }
+
+    /**
+     * @return the resource as it was offered, including any reservations, disk and provider information.
+     */
+    public Resource toResource(int aIndex) {
+
+        if (mDetailedResources != null && mDetailedResources[aIndex] != null) {
+            return mDetailedResources[aIndex];
+
+        } else {
+            return toPlainResource(aIndex);
+        }
+
+    }
+
+    public List<Resource> toResources() {
+        final List<Resource> resources = new ArrayList<>(mResourceNames.length);
+
+        for (int i = 0; i < mResourceNames.length; i++) {
+            resources.add(toResource(i));
+        }
+
+        return resources;
+    }
+
+    /**
+     * @return the ranges of the resource as begin/end pairs.
+     */
+    public long[] getRanges(int aIndex) {
+        return Arrays.copyOfRange(mRanges, mRangeOffsets[aIndex], mRangeOffsets[aIndex + 1]);
+    }
+
+    public String[] getSet(int aIndex) {
+
+        if (mResourceSets != null && mResourceSets[aIndex] != null) {
+            return mResourceSets[aIndex].clone();
+
+        } else {
+            return NO_ITEMS;
+        }
+
+    }
+
+    /**
+     * @return the total of all scalar resources with the given name, e.g. {@link MesosConstants#SCALAR_CPU}.
+     */
+    public double getScalar(String aName) {
+        double total = 0;
+
+        for (int i = 0; i < mResourceNames.length; i++) {
+
+            if (mResourceNames[i].equals(aName)) {
+                total += mResourceScalars[i];
+            }
+
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the ranges of all resources with the given name as begin/end pairs, e.g. {@link MesosConstants#RANGE_PORTS}.
+     */
+    public long[] getRanges(String aName) {
+        int length = 0;
+
+        for (int i = 0; i < mResourceNames.length; i++) {
+
+            if (mResourceNames[i].equals(aName)) {
+                length += mRangeOffsets[i + 1] - mRangeOffsets[i];
+            }
+
+        }
+
+        final long[] ranges = new long[length];
+        int position = 0;
+
+        for (int i = 0; i < mResourceNames.length; i++) {
+
+            if (mResourceNames[i].equals(aName)) {
+                final int count = mRangeOffsets[i + 1] - mRangeOffsets[i];
+
+                System.arraycopy(mRanges, mRangeOffsets[i], ranges, position, count);
+                position += count;
+            }
+
+        }
+
+        return ranges;
+    }
+
+    public int getAttributeCount() {
+        return mAttributeNames.length;
+    }
+
+    public String getAttributeName(int aIndex) {
+        return mAttributeNames[aIndex];
+    }
+
+    /**
+     * @return the value of a text, set or ranges attribute or null for a scalar attribute.
+     */
+    public String getAttributeValue(int aIndex) {
+        return mAttributeValues[aIndex];
+    }
+
+    /**
+     * @return the value of a scalar attribute or NaN for any other type.
+     */
+    public double getAttributeScalar(int aIndex) {
+        return mAttributeScalars[aIndex];
+    }
+
+    /**
+     * @return the value of the named text, set or ranges attribute or null if the agent does not have it.
+     */
+    public String getAttribute(String aName) {
+
+        for (int i = 0; i < mAttributeNames.length; i++) {
+
+            if (mAttributeNames[i].equals(aName)) {
+                return mAttributeValues[i];
+            }
+
+        }
+
+        return null;
+    }
+
+    private Resource toPlainResource(int aIndex) {
+
+        final Resource.Builder resource = Resource.newBuilder()
+                .setName(mResourceNames[aIndex])
+                .setType(mResourceTypes[aIndex]);
+
+        if (mResourceRoles[aIndex] != null) {
+            resource.setAllocationInfo(Resource.AllocationInfo.newBuilder().setRole(mResourceRoles[aIndex]));
+        }
+
+        switch (mResourceTypes[aIndex]) {
+
+            case SCALAR:
+                resource.setScalar(Value.Scalar.newBuilder().setValue(mResourceScalars[aIndex]));
+                break;
+
+            case RANGES:
+                final Value.Ranges.Builder ranges = Value.Ranges.newBuilder();
+
+                for (int i = mRangeOffsets[aIndex]; i < mRangeOffsets[aIndex + 1]; i += 2) {
+                    ranges.addRange(Value.Range.newBuilder().setBegin(mRanges[i]).setEnd(mRanges[i + 1]));
+                }
+
+                resource.setRanges(ranges);
+                break;
+
+            case SET:
+                resource.setSet(Value.Set.newBuilder().addAllItem(Arrays.asList(getSet(aIndex))));
+                break;
+        }
+
+        return resource.build();
+    }
+
+    private static String getResourceRole(Resource aResource) {
+
+        if (aResource.getReservationsCount() > 0) {
+            return aResource.getReservations(aResource.getReservationsCount() - 1).getRole();
+
+        } else if (aResource.hasAllocationInfo()) {
+            return aResource.getAllocationInfo().getRole();
+
+        } else {
+            return null;
+        }
+
+    }
+
+}
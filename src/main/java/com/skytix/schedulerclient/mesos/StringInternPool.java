@@ -0,0 +1,34 @@
+package com.skytix.schedulerclient.mesos;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded pool used to share a single instance of strings that repeat across offers such as hostnames, roles, resource
+ * names and attribute values.  The least recently used strings are evicted once the pool is full.
+ */
+public final class StringInternPool {
+    private final Cache<String, String> mPool;
+
+    public StringInternPool(long aMaximumSize) {
+        mPool = CacheBuilder.newBuilder()
+                .maximumSize(aMaximumSize)
+                .build();
+    }
+
+    public String intern(String aValue) {
+
+        if (aValue == null || aValue.isEmpty()) {
+            return aValue;
+        }
+
+        final String existing = mPool.asMap().putIfAbsent(aValue, aValue);
+
+        return existing != null ? existing : aValue;
+    }
+
+    public long size() {
+        return mPool.size();
+    }
+
+}
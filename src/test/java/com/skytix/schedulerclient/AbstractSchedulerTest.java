@@ -0,0 +1,99 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.mesos.CompactOffer;
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link Scheduler} against a {@link MockMesosMaster} for each test.
+ */
+public abstract class AbstractSchedulerTest {
+    protected MockMesosMaster mMaster;
+    protected Scheduler mScheduler;
+
+    @Before
+    public void startMaster() throws Exception {
+        mMaster = new MockMesosMaster();
+    }
+
+    @After
+    public void stopScheduler() throws Exception {
+
+        if (mScheduler != null) {
+            mScheduler.close();
+        }
+
+        mMaster.close();
+    }
+
+    protected SchedulerConfig.SchedulerConfigBuilder<?, ?> config() {
+        return SchedulerConfig.builder().mesosMasterURL(mMaster.getURL());
+    }
+
+    protected Scheduler startScheduler(SchedulerConfig.SchedulerConfigBuilder<?, ?> aConfig) throws Exception {
+        return startScheduler(aConfig, new SchedulerEventHandler() {});
+    }
+
+    /**
+     * Starts the Scheduler and waits for it to subscribe.
+     */
+    protected Scheduler startScheduler(SchedulerConfig.SchedulerConfigBuilder<?, ?> aConfig, SchedulerEventHandler aHandler) throws Exception {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+
+        mScheduler = Scheduler.newScheduler(aConfig.build(), new SchedulerEventHandler() {
+
+            @Override
+            public void onSubscribe(SchedulerRemote aScheduler, Protos.Event.Subscribed aSubscribeEvent) {
+                aHandler.onSubscribe(aScheduler, aSubscribeEvent);
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onTerminate(Exception aException) {
+                aHandler.onTerminate(aException);
+            }
+
+            @Override
+            public void onDisconnect() {
+                aHandler.onDisconnect();
+            }
+
+            @Override
+            public void onExit() {
+                aHandler.onExit();
+            }
+
+            @Override
+            public void handleEvent(Protos.Event aEvent) {
+                aHandler.handleEvent(aEvent);
+            }
+
+            @Override
+            public void handleOffers(List<CompactOffer> aOffers) {
+                aHandler.handleOffers(aOffers);
+            }
+
+        });
+
+        Assert.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+        return mScheduler;
+    }
+
+    protected void awaitOutstandingOffers(int aCount) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (mScheduler.getOfferTracker().getOutstandingOffers() < aCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(aCount, mScheduler.getOfferTracker().getOutstandingOffers());
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.mesos.CompactOffer;
+import com.skytix.schedulerclient.mesos.MesosConstants;
+import com.skytix.schedulerclient.mesos.StringInternPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.apache.mesos.v1.Protos.*;
+
+public class AdaptiveDeclinePolicyTest {
+
+    @Test
+    public void testRefuseSecondsEscalateUpToCap() {
+        final AdaptiveDeclinePolicy policy = new AdaptiveDeclinePolicy(5, 30, 2);
+        final Offer offer = createOffer("agent-1", "web");
+
+        Assert.assertEquals(5, policy.nextRefuseSeconds(offer), 0);
+        Assert.assertEquals(10, policy.nextRefuseSeconds(offer), 0);
+        Assert.assertEquals(20, policy.nextRefuseSeconds(offer), 0);
+        Assert.assertEquals(30, policy.nextRefuseSeconds(offer), 0);
+        Assert.assertEquals(30, policy.nextRefuseSeconds(offer), 0);
+        Assert.assertEquals(5, policy.getConsecutiveDeclines(offer.getAgentId(), "web"));
+    }
+
+    @Test
+    public void testHistoryIsKeptPerAgentAndRole() {
+        final AdaptiveDeclinePolicy policy = new AdaptiveDeclinePolicy(5, 300, 2);
+
+        policy.nextRefuseSeconds(createOffer("agent-1", "web"));
+        policy.nextRefuseSeconds(createOffer("agent-1", "web"));
+
+        Assert.assertEquals(5, policy.nextRefuseSeconds(createOffer("agent-1", "batch")), 0);
+        Assert.assertEquals(5, policy.nextRefuseSeconds(createOffer("agent-2", "web")), 0);
+        Assert.assertEquals(20, policy.nextRefuseSeconds(createOffer("agent-1", "web")), 0);
+    }
+
+    @Test
+    public void testResetByAgentAndRole() {
+        final AdaptiveDeclinePolicy policy = new AdaptiveDeclinePolicy(5, 300, 2);
+        final Offer web = createOffer("agent-1", "web");
+        final Offer batch = createOffer("agent-2", "batch");
+
+        policy.nextRefuseSeconds(web);
+        policy.nextRefuseSeconds(batch);
+
+        policy.reset(Collections.singletonList("web"));
+        Assert.assertEquals(0, policy.getConsecutiveDeclines(web.getAgentId(), "web"));
+        Assert.assertEquals(1, policy.getConsecutiveDeclines(batch.getAgentId(), "batch"));
+
+        policy.reset(batch.getAgentId());
+        Assert.assertEquals(0, policy.getConsecutiveDeclines(batch.getAgentId(), "batch"));
+    }
+
+    @Test
+    public void testCompactOfferSharesHistoryWithItsOffer() {
+        final AdaptiveDeclinePolicy policy = new AdaptiveDeclinePolicy(5, 300, 2);
+        final Offer offer = createOffer("agent-1", "web");
+        final Offer unallocated = offer.toBuilder().clearAllocationInfo().build();
+        final StringInternPool pool = new StringInternPool(100);
+
+        policy.nextRefuseSeconds(offer);
+
+        Assert.assertEquals(10, policy.nextRefuseSeconds(CompactOffer.from(offer, pool)), 0);
+        Assert.assertEquals(5, policy.nextRefuseSeconds(CompactOffer.from(unallocated, pool)), 0);
+        Assert.assertEquals(1, policy.getConsecutiveDeclines(offer.getAgentId(), MesosConstants.ROLE_ALL));
+    }
+
+    private Offer createOffer(String aAgentId, String aRole) {
+
+        return Offer.newBuilder()
+                .setId(OfferID.newBuilder().setValue(aAgentId + "-" + aRole))
+                .setFrameworkId(FrameworkID.newBuilder().setValue("framework"))
+                .setAgentId(AgentID.newBuilder().setValue(aAgentId))
+                .setHostname(aAgentId)
+                .setAllocationInfo(Resource.AllocationInfo.newBuilder().setRole(aRole))
+                .build();
+
+    }
+
+}
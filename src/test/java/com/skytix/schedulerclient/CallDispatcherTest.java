@@ -0,0 +1,121 @@
+package com.skytix.schedulerclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.apache.mesos.v1.scheduler.Protos.Call;
+
+public class CallDispatcherTest {
+
+    @Test
+    public void testCriticalCallsAreSentBeforeQueuedDeclines() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Call.Type> sent = new CopyOnWriteArrayList<>();
+
+        final CallDispatcher dispatcher = new CallDispatcher((call) -> {
+
+            if (sent.isEmpty()) {
+                blocked.countDown();
+                release.await();
+            }
+
+            sent.add(call.getType());
+
+        }, () -> "http://master:5050", 100, 0, 1, 1);
+
+        try {
+            dispatcher.submit(createCall(Call.Type.DECLINE));
+            blocked.await();
+
+            dispatcher.submit(createCall(Call.Type.DECLINE));
+            dispatcher.submit(createCall(Call.Type.ACCEPT));
+            final CompletableFuture<Void> kill = dispatcher.submit(createCall(Call.Type.KILL));
+
+            Assert.assertEquals(3, dispatcher.getQueueDepth());
+            release.countDown();
+            kill.get(5, TimeUnit.SECONDS);
+
+            dispatcher.submit(createCall(Call.Type.RECONCILE)).get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(
+                    List.of(Call.Type.DECLINE, Call.Type.KILL, Call.Type.ACCEPT, Call.Type.DECLINE, Call.Type.RECONCILE),
+                    sent
+            );
+
+            Assert.assertEquals(3, dispatcher.getSent(CallDispatcher.Priority.BULK));
+
+        } finally {
+            dispatcher.close();
+        }
+
+    }
+
+    @Test
+    public void testFullLaneRejectsCalls() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CallDispatcher dispatcher = new CallDispatcher((call) -> release.await(), () -> "http://master:5050", 1, 0, 1, 1);
+
+        try {
+            dispatcher.submit(createCall(Call.Type.DECLINE));
+
+            while (dispatcher.getQueueDepth() > 0) {
+                Thread.sleep(10);
+            }
+
+            dispatcher.submit(createCall(Call.Type.DECLINE));
+
+            final CompletableFuture<Void> rejected = dispatcher.submit(createCall(Call.Type.DECLINE));
+
+            Assert.assertTrue(rejected.isCompletedExceptionally());
+            Assert.assertEquals(1, dispatcher.getRejected(CallDispatcher.Priority.BULK));
+
+            // Other lanes are unaffected.
+            Assert.assertFalse(dispatcher.submit(createCall(Call.Type.KILL)).isCompletedExceptionally());
+
+        } finally {
+            release.countDown();
+            dispatcher.close();
+        }
+
+    }
+
+    @Test
+    public void testCriticalCallOvertakesDeclineWaitingForRateLimit() throws Exception {
+        final List<Call.Type> sent = new CopyOnWriteArrayList<>();
+        final CallDispatcher dispatcher = new CallDispatcher((call) -> sent.add(call.getType()), () -> "http://master:5050", 100, 2, 1, 1);
+
+        try {
+            dispatcher.submit(createCall(Call.Type.DECLINE)).get(5, TimeUnit.SECONDS);
+
+            // The worker is now waiting for its next token.
+            dispatcher.submit(createCall(Call.Type.DECLINE));
+            dispatcher.submit(createCall(Call.Type.KILL)).get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(List.of(Call.Type.DECLINE, Call.Type.KILL), sent);
+
+        } finally {
+            dispatcher.close();
+        }
+
+    }
+
+    @Test
+    public void testTokenBucketLimitsRate() {
+        final TokenBucket bucket = new TokenBucket(10, 2, 2);
+        final long now = System.nanoTime();
+
+        Assert.assertEquals(0, bucket.tryAcquire(now));
+        Assert.assertEquals(0, bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now) > 0);
+        Assert.assertEquals(0, bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    private Call createCall(Call.Type aType) {
+        return Call.newBuilder().setType(aType).build();
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.skytix.schedulerclient;
+
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class HighAvailabilitySchedulerTest {
+    private TestingServer mZooKeeper;
+    private MockMesosMaster mMaster;
+
+    @Before
+    public void setUp() throws Exception {
+        mZooKeeper = new TestingServer(true);
+        mMaster = new MockMesosMaster();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mMaster.close();
+        mZooKeeper.close();
+    }
+
+    @Test
+    public void testStandbyTakesOverWithSharedFrameworkID() throws Exception {
+        final BlockingQueue<String> subscriptions = new LinkedBlockingQueue<>();
+
+        final HighAvailabilityScheduler first = createReplica("replica-1", subscriptions);
+        final String frameworkID = subscriptions.poll(10, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(frameworkID);
+        Assert.assertTrue(first.isLeader());
+
+        final HighAvailabilityScheduler second = createReplica("replica-2", subscriptions);
+
+        // Only the leader subscribes.  The standby already knows the FrameworkID.
+        Assert.assertNull(subscriptions.poll(1, TimeUnit.SECONDS));
+        Assert.assertFalse(second.isLeader());
+        Assert.assertEquals(frameworkID, second.getFrameworkID().orElse(null));
+
+        first.close();
+
+        Assert.assertEquals(frameworkID, subscriptions.poll(10, TimeUnit.SECONDS));
+        Assert.assertTrue(second.isLeader());
+        Assert.assertFalse(first.isLeader());
+
+        second.close();
+    }
+
+    @Test
+    public void testLeaderGivesUpLeadershipWhenSubscriptionEnds() throws Exception {
+        final BlockingQueue<String> subscriptions = new LinkedBlockingQueue<>();
+
+        final HighAvailabilityScheduler first = createReplica("replica-1", subscriptions);
+        final String frameworkID = subscriptions.poll(10, TimeUnit.SECONDS);
+        final HighAvailabilityScheduler second = createReplica("replica-2", subscriptions);
+
+        // Give the standby time to join the election.
+        Assert.assertNull(subscriptions.poll(1, TimeUnit.SECONDS));
+        Assert.assertTrue(first.isLeader());
+
+        mMaster.closeSubscription();
+
+        // The standby takes over instead of the leader holding on to a dead Scheduler.
+        Assert.assertEquals(frameworkID, subscriptions.poll(10, TimeUnit.SECONDS));
+        Assert.assertTrue(second.isLeader());
+        Assert.assertFalse(first.isLeader());
+        Assert.assertFalse(first.getScheduler().isPresent());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testLeaderClosesSchedulerWhenZooKeeperIsLost() throws Exception {
+        final BlockingQueue<String> subscriptions = new LinkedBlockingQueue<>();
+
+        final HighAvailabilityScheduler replica = createReplica("replica-1", subscriptions);
+        final String frameworkID = subscriptions.poll(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(replica.getScheduler().isPresent());
+
+        mZooKeeper.stop();
+
+        final long deadline = System.currentTimeMillis() + 10000;
+
+        while (replica.getScheduler().isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertFalse(replica.getScheduler().isPresent());
+        Assert.assertFalse(replica.isLeader());
+
+        // Leadership is regained once ZooKeeper is back.
+        mZooKeeper.restart();
+
+        Assert.assertEquals(frameworkID, subscriptions.poll(20, TimeUnit.SECONDS));
+        Assert.assertTrue(replica.isLeader());
+
+        replica.close();
+    }
+
+    private HighAvailabilityScheduler createReplica(String aReplicaID, BlockingQueue<String> aSubscriptions) throws Exception {
+
+        return HighAvailabilityScheduler.newScheduler(
+                HighAvailabilitySchedulerConfig.builder()
+                        .mesosMasterURL(mMaster.getURL())
+                        .zooKeeperURL(mZooKeeper.getConnectString())
+                        .zooKeeperPath("/junit-ha-framework")
+                        .replicaID(aReplicaID)
+                        .build(),
+                new BaseSchedulerEventHandler() {
+
+                    @Override
+                    public void onSubscribe(Protos.Event.Subscribed aSubscribeEvent) {
+                        aSubscriptions.add(aSubscribeEvent.getFrameworkId().getValue());
+                    }
+
+                }
+        );
+
+    }
+
+}
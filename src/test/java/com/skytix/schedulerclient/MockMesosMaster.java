@@ -0,0 +1,238 @@
+package com.skytix.schedulerclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.mesos.v1.scheduler.Protos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.apache.mesos.v1.Protos.*;
+
+/**
+ * Minimal Mesos master speaking the scheduler HTTP API for tests.  Subscriptions receive a SUBSCRIBED event followed by
+ * any events queued with {@link #sendEvent(Protos.Event)} and every other call is recorded.  As with a real master, a
+ * call must carry the stream ID of the latest subscription to this master or it is rejected with a 400.
+ */
+public class MockMesosMaster implements Closeable {
+    public static final AgentID AGENT_ID = AgentID.newBuilder().setValue("agent-1").build();
+
+    private static final Protos.Event SHUTDOWN = Protos.Event.newBuilder().setType(Protos.Event.Type.UNKNOWN).build();
+    private static final AtomicInteger STREAM_IDS = new AtomicInteger();
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutorService = Executors.newCachedThreadPool();
+    private final BlockingQueue<Protos.Event> mEvents = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Protos.Call> mCalls = new LinkedBlockingQueue<>();
+    private volatile Function<Protos.Call, Integer> mCallHandler = (call) -> 202;
+    private volatile String mRedirectURL = null;
+    private volatile String mStreamID = null;
+
+    public MockMesosMaster() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        mServer.setExecutor(mExecutorService);
+        mServer.createContext("/redirect", this::handleRedirect);
+        mServer.createContext("/api/v1/scheduler", this::handleCall);
+        mServer.start();
+    }
+
+    public String getURL() {
+        return String.format("http://localhost:%d", mServer.getAddress().getPort());
+    }
+
+    /**
+     * @return the stream ID of the latest subscription, or null if nothing has subscribed.
+     */
+    public String getStreamID() {
+        return mStreamID;
+    }
+
+    public void setCallHandler(Function<Protos.Call, Integer> aCallHandler) {
+        mCallHandler = aCallHandler;
+    }
+
+    /**
+     * Redirects every call other than SUBSCRIBE to the given master as a non-leading master would.
+     */
+    public void setRedirectURL(String aRedirectURL) {
+        mRedirectURL = aRedirectURL;
+    }
+
+    public void sendEvent(Protos.Event aEvent) {
+        mEvents.add(aEvent);
+    }
+
+    /**
+     * Ends the subscription stream as a master that has failed over would.
+     */
+    public void closeSubscription() {
+        mEvents.add(SHUTDOWN);
+    }
+
+    public Protos.Call takeCall() throws InterruptedException {
+        final Protos.Call call = mCalls.poll(5, TimeUnit.SECONDS);
+
+        if (call == null) {
+            throw new IllegalStateException("No call was received by the mock master");
+        }
+
+        return call;
+    }
+
+    public BlockingQueue<Protos.Call> getCalls() {
+        return mCalls;
+    }
+
+    @Override
+    public void close() {
+        mEvents.add(SHUTDOWN);
+        mServer.stop(0);
+        mExecutorService.shutdownNow();
+    }
+
+    public static Protos.Event createOffersEvent(String... aOfferIDs) {
+        final Protos.Event.Offers.Builder offers = Protos.Event.Offers.newBuilder();
+
+        for (String offerID : aOfferIDs) {
+
+            offers.addOffers(
+                    Offer.newBuilder()
+                            .setId(createOfferID(offerID))
+                            .setFrameworkId(FrameworkID.newBuilder().setValue("framework"))
+                            .setAgentId(AGENT_ID)
+                            .setHostname(AGENT_ID.getValue())
+            );
+
+        }
+
+        return Protos.Event.newBuilder()
+                .setType(Protos.Event.Type.OFFERS)
+                .setOffers(offers)
+                .build();
+    }
+
+    public static Protos.Event createUpdateEvent(String aTaskID, TaskState aState) {
+
+        return Protos.Event.newBuilder()
+                .setType(Protos.Event.Type.UPDATE)
+                .setUpdate(
+                        Protos.Event.Update.newBuilder()
+                                .setStatus(
+                                        TaskStatus.newBuilder()
+                                                .setTaskId(createTaskID(aTaskID))
+                                                .setAgentId(AGENT_ID)
+                                                .setState(aState)
+                                )
+                ).build();
+
+    }
+
+    public static Protos.Event createInverseOffersEvent(String aInverseOfferID, long aStartMillis) {
+
+        return Protos.Event.newBuilder()
+                .setType(Protos.Event.Type.INVERSE_OFFERS)
+                .setInverseOffers(
+                        Protos.Event.InverseOffers.newBuilder()
+                                .addInverseOffers(
+                                        InverseOffer.newBuilder()
+                                                .setId(createOfferID(aInverseOfferID))
+                                                .setFrameworkId(FrameworkID.newBuilder().setValue("framework"))
+                                                .setAgentId(AGENT_ID)
+                                                .setUnavailability(
+                                                        Unavailability.newBuilder()
+                                                                .setStart(TimeInfo.newBuilder().setNanoseconds(TimeUnit.MILLISECONDS.toNanos(aStartMillis)))
+                                                )
+                                )
+                ).build();
+
+    }
+
+    public static Protos.Event createEvent(Protos.Event.Type aType) {
+        return Protos.Event.newBuilder().setType(aType).build();
+    }
+
+    public static OfferID createOfferID(String aOfferID) {
+        return OfferID.newBuilder().setValue(aOfferID).build();
+    }
+
+    public static TaskID createTaskID(String aTaskID) {
+        return TaskID.newBuilder().setValue(aTaskID).build();
+    }
+
+    private void handleRedirect(HttpExchange aExchange) throws IOException {
+        aExchange.getResponseHeaders().add("Connection", "close");
+        aExchange.getResponseHeaders().add("Location", String.format("//localhost:%d", mServer.getAddress().getPort()));
+        aExchange.sendResponseHeaders(307, -1);
+        aExchange.close();
+    }
+
+    private void handleCall(HttpExchange aExchange) throws IOException {
+        final Protos.Call call = Protos.Call.parseFrom(aExchange.getRequestBody().readAllBytes());
+
+        if (call.getType() == Protos.Call.Type.SUBSCRIBE) {
+            mStreamID = "stream-" + STREAM_IDS.incrementAndGet();
+            aExchange.getResponseHeaders().add("Mesos-Stream-Id", mStreamID);
+            aExchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream out = aExchange.getResponseBody()) {
+
+                writeEvent(out, Protos.Event.newBuilder()
+                        .setType(Protos.Event.Type.SUBSCRIBED)
+                        .setSubscribed(
+                                Protos.Event.Subscribed.newBuilder()
+                                        .setFrameworkId(call.getFrameworkId())
+                                        .setHeartbeatIntervalSeconds(15)
+                        ).build()
+                );
+
+                Protos.Event event;
+
+                while ((event = mEvents.take()) != SHUTDOWN) {
+                    writeEvent(out, event);
+                }
+
+            } catch (InterruptedException aE) {
+                Thread.currentThread().interrupt();
+            }
+
+        } else if (mRedirectURL != null) {
+            aExchange.getResponseHeaders().add("Connection", "close");
+            aExchange.getResponseHeaders().add("Location", mRedirectURL.replaceFirst("^https?:", "") + "/api/v1/scheduler");
+            aExchange.sendResponseHeaders(307, -1);
+            aExchange.close();
+
+        } else if (!Objects.equals(mStreamID, aExchange.getRequestHeaders().getFirst("Mesos-Stream-Id"))) {
+            final byte[] body = "The stream ID included in this request didn't match the stream ID currently associated with framework".getBytes(StandardCharsets.UTF_8);
+
+            aExchange.getResponseHeaders().add("Connection", "close");
+            aExchange.sendResponseHeaders(400, body.length);
+
+            try (OutputStream out = aExchange.getResponseBody()) {
+                out.write(body);
+            }
+
+        } else {
+            mCalls.add(call);
+            aExchange.getResponseHeaders().add("Connection", "close");
+            aExchange.sendResponseHeaders(mCallHandler.apply(call), -1);
+            aExchange.close();
+        }
+
+    }
+
+    private void writeEvent(OutputStream aOut, Protos.Event aEvent) throws IOException {
+        final byte[] data = aEvent.toByteArray();
+
+        aOut.write(String.format("%d\n", data.length).getBytes(StandardCharsets.UTF_8));
+        aOut.write(data);
+        aOut.flush();
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.skytix.schedulerclient.MockMesosMaster.createOfferID;
+import static com.skytix.schedulerclient.MockMesosMaster.createOffersEvent;
+import static com.skytix.schedulerclient.MockMesosMaster.createTaskID;
+
+public class SchedulerCallRoutingTest extends AbstractSchedulerTest {
+    private MockMesosMaster mNewLeader;
+
+    @Before
+    public void setUp() throws Exception {
+        mNewLeader = new MockMesosMaster();
+    }
+
+    @After
+    public void tearDown() {
+        mNewLeader.close();
+    }
+
+    @Test
+    public void testIdempotentCallFollowsRedirectToNewLeader() throws Exception {
+        startScheduler(config().callRetryBackoffMillis(10));
+        mMaster.setRedirectURL(mNewLeader.getURL());
+
+        mScheduler.getRemote().decline(Collections.singletonList(createOfferID("offer-1"))).get(5, TimeUnit.SECONDS);
+
+        // The new leader only accepts calls carrying the stream ID of a subscription to it.
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mNewLeader.takeCall().getType());
+        Assert.assertEquals(mNewLeader.getURL(), mScheduler.getMesosMasterURL());
+        Assert.assertEquals(mNewLeader.getStreamID(), mScheduler.getDiagnostics().getStreamID());
+    }
+
+    @Test
+    public void testIdempotentCallIsRetriedWhileMasterIsUnavailable() throws Exception {
+        startScheduler(config().callRetryBackoffMillis(10));
+
+        final CountDownLatch unavailable = new CountDownLatch(2);
+
+        mMaster.setCallHandler((call) -> {
+
+            if (unavailable.getCount() > 0) {
+                unavailable.countDown();
+                return 503;
+
+            } else {
+                return 202;
+            }
+
+        });
+
+        mScheduler.submitCall(mScheduler.createCall(Protos.Call.Type.RECONCILE).build()).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(3, mMaster.getCalls().size());
+    }
+
+    @Test
+    public void testAcceptFailsFastOnLeaderChange() throws Exception {
+        startScheduler(config().callRetryBackoffMillis(10));
+        mMaster.setRedirectURL(mNewLeader.getURL());
+
+        try {
+            mScheduler.submitCall(mScheduler.createCall(Protos.Call.Type.ACCEPT).build()).get(5, TimeUnit.SECONDS);
+            Assert.fail("ACCEPT should not be retried against the new leader");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+            Assert.assertTrue(((CallFailedException) aE.getCause()).isLeaderChanged());
+        }
+
+        Assert.assertTrue(mNewLeader.getCalls().isEmpty());
+        Assert.assertEquals(mNewLeader.getURL(), mScheduler.getMesosMasterURL());
+    }
+
+    @Test
+    public void testRejectedAcceptFailsFuture() throws Exception {
+        startScheduler(config());
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        awaitOutstandingOffers(1);
+
+        mMaster.setCallHandler((call) -> call.getType() == Protos.Call.Type.ACCEPT ? 400 : 202);
+
+        try {
+            mScheduler.getRemote().accept(Collections.singletonList(createOfferID("offer-1")), Collections.emptyList()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the rejected ACCEPT to fail");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+            Assert.assertEquals(400, ((CallFailedException) aE.getCause()).getStatusCode());
+        }
+
+    }
+
+    @Test
+    public void testRejectedAcceptFailsFutureThroughDispatcher() throws Exception {
+        startScheduler(config().enableCallDispatcher(true));
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        awaitOutstandingOffers(1);
+
+        mMaster.setCallHandler((call) -> call.getType() == Protos.Call.Type.ACCEPT ? 400 : 202);
+
+        try {
+            mScheduler.getRemote().accept(Collections.singletonList(createOfferID("offer-1")), Collections.emptyList()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the rejected ACCEPT to fail");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+            Assert.assertEquals(400, ((CallFailedException) aE.getCause()).getStatusCode());
+        }
+
+    }
+
+    @Test
+    public void testRetryBackoffDoesNotHoldUpDispatcher() throws Exception {
+        final CountDownLatch unavailable = new CountDownLatch(1);
+
+        startScheduler(config().enableCallDispatcher(true).callDispatcherThreads(1).callRetryBackoffMillis(2000));
+
+        mMaster.setCallHandler((call) -> {
+
+            if (call.getType() == Protos.Call.Type.DECLINE && unavailable.getCount() > 0) {
+                unavailable.countDown();
+                return 503;
+
+            } else {
+                return 202;
+            }
+
+        });
+
+        final CompletableFuture<Void> decline = mScheduler.getRemote().decline(Collections.singletonList(createOfferID("offer-1")));
+
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mMaster.takeCall().getType());
+
+        // The only dispatcher thread is free to send the KILL while the DECLINE waits to be retried.
+        mScheduler.getRemote().kill(createTaskID("task-1"), MockMesosMaster.AGENT_ID).get(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Protos.Call.Type.KILL, mMaster.takeCall().getType());
+        Assert.assertFalse(decline.isDone());
+
+        decline.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mMaster.takeCall().getType());
+    }
+
+    @Test
+    public void testEndedSubscriptionIsNotResumedByRedirect() throws Exception {
+        final CountDownLatch disconnected = new CountDownLatch(1);
+
+        startScheduler(config().callRetryBackoffMillis(10).callRetryAttempts(2), new SchedulerEventHandler() {
+
+            @Override
+            public void onDisconnect() {
+                disconnected.countDown();
+            }
+
+        });
+
+        mMaster.closeSubscription();
+        Assert.assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+
+        mMaster.setRedirectURL(mNewLeader.getURL());
+
+        try {
+            mScheduler.getRemote().revive().get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the REVIVE to fail once the subscription has ended");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+        }
+
+        Assert.assertNull(mNewLeader.getStreamID());
+        Assert.assertEquals(mMaster.getURL(), mScheduler.getMesosMasterURL());
+    }
+
+}
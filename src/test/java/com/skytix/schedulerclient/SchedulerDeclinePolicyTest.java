@@ -0,0 +1,75 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.mesos.CompactOffer;
+import com.skytix.schedulerclient.mesos.MesosConstants;
+import com.skytix.schedulerclient.mesos.StringInternPool;
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.skytix.schedulerclient.MockMesosMaster.*;
+
+public class SchedulerDeclinePolicyTest extends AbstractSchedulerTest {
+
+    @Test
+    public void testAcceptResetsDeclineHistoryOfAgent() throws Exception {
+        startScheduler(config().declineInitialRefuseSeconds(5).declineMaxRefuseSeconds(300).declineBackoffFactor(2));
+
+        final AdaptiveDeclinePolicy policy = mScheduler.getRemote().getDeclinePolicy();
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        mMaster.sendEvent(createOffersEvent("offer-2"));
+        mMaster.sendEvent(createOffersEvent("offer-3"));
+
+        awaitOutstandingOffers(3);
+
+        mScheduler.getRemote().declineUnusable(Collections.singletonList(createOffersEvent("offer-1").getOffers().getOffers(0)));
+        mScheduler.getRemote().declineUnusable(Collections.singletonList(createOffersEvent("offer-2").getOffers().getOffers(0)));
+
+        Assert.assertEquals(2, policy.getConsecutiveDeclines(AGENT_ID, MesosConstants.ROLE_ALL));
+
+        mScheduler.getRemote().accept(Collections.singletonList(createOfferID("offer-3")), Collections.emptyList());
+
+        Assert.assertEquals(0, policy.getConsecutiveDeclines(AGENT_ID, MesosConstants.ROLE_ALL));
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mMaster.takeCall().getType());
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mMaster.takeCall().getType());
+        Assert.assertEquals(Protos.Call.Type.ACCEPT, mMaster.takeCall().getType());
+    }
+
+    @Test
+    public void testAcceptOfUnknownOfferKeepsDeclineHistory() throws Exception {
+        startScheduler(config());
+
+        final AdaptiveDeclinePolicy policy = mScheduler.getRemote().getDeclinePolicy();
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        awaitOutstandingOffers(1);
+
+        mScheduler.getRemote().declineUnusable(Collections.singletonList(createOffersEvent("offer-1").getOffers().getOffers(0)));
+        mScheduler.getRemote().accept(Collections.singletonList(createOfferID("offer-1")), Collections.emptyList());
+
+        Assert.assertEquals(1, policy.getConsecutiveDeclines(AGENT_ID, MesosConstants.ROLE_ALL));
+    }
+
+    @Test
+    public void testCompactOffersAreDeclinedWithPolicyRefuseSeconds() throws Exception {
+        startScheduler(config().declineInitialRefuseSeconds(5).declineMaxRefuseSeconds(300).declineBackoffFactor(2));
+
+        final StringInternPool pool = new StringInternPool(100);
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        mMaster.sendEvent(createOffersEvent("offer-2"));
+        awaitOutstandingOffers(2);
+
+        mScheduler.getRemote().declineUnusable(Collections.singletonList(CompactOffer.from(createOffersEvent("offer-1").getOffers().getOffers(0), pool))).get(5, TimeUnit.SECONDS);
+        mScheduler.getRemote().declineUnusable(Collections.singletonList(CompactOffer.from(createOffersEvent("offer-2").getOffers().getOffers(0), pool))).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(5, mMaster.takeCall().getDecline().getFilters().getRefuseSeconds(), 0);
+        Assert.assertEquals(10, mMaster.takeCall().getDecline().getFilters().getRefuseSeconds(), 0);
+        Assert.assertEquals(0, mScheduler.getOfferTracker().getOutstandingOffers());
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.skytix.schedulerclient.MockMesosMaster.createEvent;
+import static com.skytix.schedulerclient.MockMesosMaster.createOffersEvent;
+
+public class SchedulerDiagnosticsTest extends AbstractSchedulerTest {
+
+    @Before
+    public void setUp() throws Exception {
+        startScheduler(config().diagnosticsPort(0));
+    }
+
+    @Test
+    public void testSnapshotReflectsSchedulerState() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        mMaster.sendEvent(createEvent(Protos.Event.Type.HEARTBEAT));
+
+        mMaster.setCallHandler((call) -> {
+
+            if (call.getType() == Protos.Call.Type.SUPPRESS) {
+
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+
+                } catch (InterruptedException aE) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return 202;
+
+            } else {
+                return 400;
+            }
+
+        });
+
+        final CompletableFuture<Void> suppress = mScheduler.submitCall(mScheduler.createCall(Protos.Call.Type.SUPPRESS).build());
+
+        mMaster.takeCall();
+
+        try {
+            mScheduler.submitCall(mScheduler.createCall(Protos.Call.Type.MESSAGE).build()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the MESSAGE call to be rejected");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+        }
+
+        final SchedulerDiagnostics diagnostics = mScheduler.getDiagnostics();
+
+        Assert.assertEquals(mMaster.getURL(), diagnostics.getMasterURL());
+        Assert.assertEquals(mMaster.getStreamID(), diagnostics.getStreamID());
+        Assert.assertTrue(diagnostics.isRunning());
+        Assert.assertTrue(diagnostics.getMillisSinceHeartbeat() >= 0);
+        Assert.assertEquals(-1, diagnostics.getCallQueueDepth());
+        Assert.assertEquals(1, diagnostics.getOutstandingOffers().size());
+        Assert.assertEquals("offer-1", diagnostics.getOutstandingOffers().get(0).getOfferID());
+        Assert.assertEquals(Map.of("SUPPRESS", 1), diagnostics.getInFlightCalls());
+        Assert.assertEquals(1, diagnostics.getRecentSendErrors().size());
+        Assert.assertEquals("MESSAGE", diagnostics.getRecentSendErrors().get(0).getCallType());
+        Assert.assertEquals(400, diagnostics.getRecentSendErrors().get(0).getStatusCode());
+
+        release.countDown();
+        suppress.get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(mScheduler.getDiagnostics().getInFlightCalls().isEmpty());
+    }
+
+    @Test
+    public void testServerReturnsJson() throws Exception {
+        final String frameworkID = mScheduler.getDiagnostics().getFrameworkID();
+        final InetSocketAddress address = mScheduler.getDiagnosticsServer().orElseThrow().getAddress();
+        final String host = String.format("%s:%d", address.getHostString(), address.getPort());
+        final HttpClient client = HttpClient.newHttpClient();
+
+        Assert.assertTrue(address.getAddress().isLoopbackAddress());
+
+        final HttpResponse<String> all = client.send(
+                HttpRequest.newBuilder(URI.create(String.format("http://%s/diagnostics", host))).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        Assert.assertEquals(200, all.statusCode());
+        Assert.assertTrue(all.body().startsWith("[{"));
+        Assert.assertTrue(all.body().contains(String.format("\"frameworkID\":\"%s\"", frameworkID)));
+        Assert.assertTrue(all.body().contains(String.format("\"streamID\":\"%s\"", mMaster.getStreamID())));
+
+        final HttpResponse<String> single = client.send(
+                HttpRequest.newBuilder(URI.create(String.format("http://%s/diagnostics/%s", host, frameworkID))).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        Assert.assertEquals(200, single.statusCode());
+        Assert.assertTrue(single.body().contains("\"outstandingOffers\":[]"));
+
+        final HttpResponse<String> missing = client.send(
+                HttpRequest.newBuilder(URI.create(String.format("http://%s/diagnostics/unknown", host))).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        Assert.assertEquals(404, missing.statusCode());
+    }
+
+    @Test
+    public void testJsonEscapesStrings() {
+
+        final SchedulerDiagnostics diagnostics = SchedulerDiagnostics.builder()
+                .frameworkID("framework-1")
+                .outstandingOffers(List.of())
+                .inFlightCalls(Map.of())
+                .recentSendErrors(List.of(new SchedulerDiagnostics.SendError(0, "MESSAGE", 400, "Bad \"call\"\n\\path\u0001")))
+                .build();
+
+        final String json = diagnostics.toJson();
+
+        Assert.assertTrue(json.contains("\"message\":\"Bad \\\"call\\\"\\n\\\\path\\u0001\""));
+        Assert.assertTrue(json.contains("\"masterURL\":null"));
+    }
+
+    @Test
+    public void testFailedStartReleasesResources() throws Exception {
+        final Path journalPath = Files.createTempDirectory("scheduler-journal");
+        final int port;
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final SchedulerConfig.SchedulerConfigBuilder<?, ?> config = config().diagnosticsPort(port).journalPath(journalPath.toString());
+
+        try {
+            Scheduler.newScheduler(config.mesosMasterURL("http://127.0.0.1:1").build(), new SchedulerEventHandler() {});
+            Assert.fail("Expected the Scheduler to fail to subscribe");
+
+        } catch (IOException aE) {
+            // Expected
+        }
+
+        // Binds the same port and locks the same journal.
+        final Scheduler scheduler = Scheduler.newScheduler(config.mesosMasterURL(mMaster.getURL()).build(), new SchedulerEventHandler() {});
+
+        try {
+            Assert.assertEquals(port, scheduler.getDiagnosticsServer().orElseThrow().getAddress().getPort());
+
+        } finally {
+            scheduler.close();
+        }
+
+        try (Stream<Path> files = Files.walk(journalPath)) {
+            files.sorted(Comparator.reverseOrder()).forEach((file) -> file.toFile().delete());
+        }
+
+    }
+
+}
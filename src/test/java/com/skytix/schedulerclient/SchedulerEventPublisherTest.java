@@ -0,0 +1,162 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class SchedulerEventPublisherTest {
+
+    @Test
+    public void testSubscribersReceiveFilteredEventsIndependently() throws Exception {
+        final SchedulerEventPublisher publisher = new SchedulerEventPublisher();
+        final RecordingSubscriber all = new RecordingSubscriber(Long.MAX_VALUE);
+        final RecordingSubscriber offers = new RecordingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(all);
+        publisher.subscribe(offers, EnumSet.of(Protos.Event.Type.OFFERS));
+
+        publisher.publish(createEvent(Protos.Event.Type.HEARTBEAT));
+        publisher.publish(createEvent(Protos.Event.Type.OFFERS));
+        publisher.publish(createEvent(Protos.Event.Type.UPDATE));
+        publisher.close();
+
+        Assert.assertTrue(all.mCompleted.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(offers.mCompleted.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(List.of(Protos.Event.Type.HEARTBEAT, Protos.Event.Type.OFFERS, Protos.Event.Type.UPDATE), all.mReceived);
+        Assert.assertEquals(List.of(Protos.Event.Type.OFFERS), offers.mReceived);
+    }
+
+    @Test
+    public void testSlowSubscriberDropsEventsWithoutBlocking() throws Exception {
+        final SchedulerEventPublisher publisher = new SchedulerEventPublisher();
+        final RecordingSubscriber slow = new RecordingSubscriber(0);
+
+        publisher.subscribe(slow, EnumSet.allOf(Protos.Event.Type.class), 2);
+
+        Assert.assertTrue(slow.mSubscribed.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            publisher.publish(createEvent(Protos.Event.Type.HEARTBEAT));
+        }
+
+        Assert.assertTrue(publisher.getDropped() > 0);
+
+        slow.mSubscription.request(Long.MAX_VALUE);
+        publisher.close();
+
+        Assert.assertTrue(slow.mCompleted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(10, slow.mReceived.size() + publisher.getDropped());
+    }
+
+    @Test
+    public void testDropsAreCountedPerSubscriber() throws Exception {
+        final SchedulerEventPublisher publisher = new SchedulerEventPublisher();
+        final RecordingSubscriber slow = new RecordingSubscriber(0);
+        final RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(slow, EnumSet.allOf(Protos.Event.Type.class), 2);
+        publisher.subscribe(fast);
+
+        Assert.assertTrue(slow.mSubscribed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(fast.mSubscribed.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            publisher.publish(createEvent(Protos.Event.Type.UPDATE));
+        }
+
+        Assert.assertTrue(publisher.getDropped(slow) > 0);
+        Assert.assertEquals(0, publisher.getDropped(fast));
+        Assert.assertEquals(publisher.getDropped(), publisher.getDropped(slow));
+
+        publisher.close();
+    }
+
+    @Test
+    public void testOverflowCanFailSubscriber() throws Exception {
+        final SchedulerEventPublisher publisher = new SchedulerEventPublisher();
+        final RecordingSubscriber slow = new RecordingSubscriber(0);
+
+        publisher.subscribe(slow, EnumSet.allOf(Protos.Event.Type.class), 2, SchedulerEventPublisher.Overflow.FAIL);
+
+        Assert.assertTrue(slow.mSubscribed.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            publisher.publish(createEvent(Protos.Event.Type.UPDATE));
+        }
+
+        Assert.assertTrue(slow.mCompleted.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(slow.mError instanceof IllegalStateException);
+        Assert.assertEquals(0, publisher.getSubscriberCount());
+
+        publisher.close();
+    }
+
+    @Test
+    public void testSubscriberAfterCloseIsCompleted() throws Exception {
+        final SchedulerEventPublisher publisher = new SchedulerEventPublisher();
+        final RecordingSubscriber late = new RecordingSubscriber(Long.MAX_VALUE);
+        final IOException error = new IOException("Connection lost");
+
+        publisher.closeExceptionally(error);
+        publisher.subscribe(late);
+
+        Assert.assertTrue(late.mSubscribed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(late.mCompleted.await(5, TimeUnit.SECONDS));
+        Assert.assertSame(error, late.mError);
+    }
+
+    private Protos.Event createEvent(Protos.Event.Type aType) {
+        return Protos.Event.newBuilder().setType(aType).build();
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Protos.Event> {
+        private final long mInitialDemand;
+        private final List<Protos.Event.Type> mReceived = new CopyOnWriteArrayList<>();
+        private final CountDownLatch mSubscribed = new CountDownLatch(1);
+        private final CountDownLatch mCompleted = new CountDownLatch(1);
+        private volatile Flow.Subscription mSubscription;
+        private volatile Throwable mError;
+
+        private RecordingSubscriber(long aInitialDemand) {
+            mInitialDemand = aInitialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription aSubscription) {
+            mSubscription = aSubscription;
+
+            if (mInitialDemand > 0) {
+                aSubscription.request(mInitialDemand);
+            }
+
+            mSubscribed.countDown();
+        }
+
+        @Override
+        public void onNext(Protos.Event aEvent) {
+            mReceived.add(aEvent.getType());
+        }
+
+        @Override
+        public void onError(Throwable aThrowable) {
+            mError = aThrowable;
+            mCompleted.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            mCompleted.countDown();
+        }
+
+    }
+
+}
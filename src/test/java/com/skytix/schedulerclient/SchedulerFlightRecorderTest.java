@@ -0,0 +1,105 @@
+package com.skytix.schedulerclient;
+
+import com.skytix.schedulerclient.jfr.CallSendEvent;
+import com.skytix.schedulerclient.jfr.OfferHoldEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.skytix.schedulerclient.MockMesosMaster.*;
+
+public class SchedulerFlightRecorderTest extends AbstractSchedulerTest {
+    private Recording mRecording;
+    private Path mRecordingFile;
+
+    @Before
+    public void startRecording() throws Exception {
+        mRecordingFile = Files.createTempFile("scheduler", ".jfr");
+        mRecording = new Recording();
+        mRecording.enable(OfferHoldEvent.class).withoutThreshold();
+        mRecording.enable(CallSendEvent.class).withoutThreshold();
+        mRecording.start();
+    }
+
+    @After
+    public void deleteRecording() throws Exception {
+        mRecording.close();
+        Files.deleteIfExists(mRecordingFile);
+    }
+
+    @Test
+    public void testEventsCarryCallAndOfferIDs() throws Exception {
+        startScheduler(config());
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+        awaitOutstandingOffers(1);
+
+        mScheduler.getRemote().decline(Collections.singletonList(createOfferID("offer-1")));
+        Assert.assertEquals(Protos.Call.Type.DECLINE, mMaster.takeCall().getType());
+
+        final List<RecordedEvent> events = stopRecording();
+        final RecordedEvent hold = single(events, "com.skytix.schedulerclient.OfferHold");
+        final RecordedEvent send = single(events, "com.skytix.schedulerclient.CallSend");
+
+        Assert.assertEquals("offer-1", hold.getString("offerId"));
+        Assert.assertEquals(AGENT_ID.getValue(), hold.getString("agentId"));
+        Assert.assertEquals("DECLINE", hold.getString("outcome"));
+        Assert.assertEquals("DECLINE", send.getString("callType"));
+        Assert.assertEquals("offer-1", send.getString("offerIds"));
+        Assert.assertEquals(202, send.getInt("statusCode"));
+        Assert.assertNull(send.getString("error"));
+    }
+
+    @Test
+    public void testFailedSendIsRecorded() throws Exception {
+        startScheduler(config());
+
+        mMaster.close();
+
+        try {
+            mScheduler.submitCall(mScheduler.createCall(Protos.Call.Type.MESSAGE).build()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the MESSAGE call to fail");
+
+        } catch (ExecutionException aE) {
+            // Expected
+        }
+
+        final RecordedEvent send = single(stopRecording(), "com.skytix.schedulerclient.CallSend");
+
+        Assert.assertEquals("MESSAGE", send.getString("callType"));
+        Assert.assertEquals(0, send.getInt("statusCode"));
+        Assert.assertNotNull(send.getString("error"));
+    }
+
+    private List<RecordedEvent> stopRecording() throws Exception {
+        mRecording.stop();
+        mRecording.dump(mRecordingFile);
+
+        return RecordingFile.readAllEvents(mRecordingFile);
+    }
+
+    private RecordedEvent single(List<RecordedEvent> aEvents, String aEventType) {
+
+        final List<RecordedEvent> matching = aEvents.stream()
+                .filter((event) -> event.getEventType().getName().equals(aEventType))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, matching.size());
+
+        return matching.get(0);
+    }
+
+}
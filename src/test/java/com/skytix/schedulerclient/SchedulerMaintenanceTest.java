@@ -0,0 +1,112 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.skytix.schedulerclient.MockMesosMaster.*;
+import static org.apache.mesos.v1.Protos.*;
+
+public class SchedulerMaintenanceTest extends AbstractSchedulerTest {
+    private static final OfferID INVERSE_OFFER = createOfferID("inverse-offer-1");
+
+    @Test
+    public void testAgentIsDrainedBeforeInverseOfferIsAccepted() throws Exception {
+        startScheduler(config(MaintenanceHandler.drainAgent()));
+
+        mMaster.sendEvent(createUpdateEvent("task-1", TaskState.TASK_RUNNING));
+
+        mMaster.setCallHandler((call) -> {
+
+            if (call.getType() == Protos.Call.Type.KILL) {
+                mMaster.sendEvent(createUpdateEvent("task-1", TaskState.TASK_KILLED));
+            }
+
+            return 202;
+        });
+
+        final long start = System.currentTimeMillis();
+
+        mMaster.sendEvent(createInverseOffersEvent(INVERSE_OFFER.getValue(), start + 500));
+
+        final Protos.Call kill = mMaster.takeCall();
+        final Protos.Call accept = mMaster.takeCall();
+
+        // Preparation starts at the lead time, not as soon as the inverse offer arrives.
+        Assert.assertTrue(System.currentTimeMillis() - start >= 300);
+        Assert.assertEquals(Protos.Call.Type.KILL, kill.getType());
+        Assert.assertEquals("task-1", kill.getKill().getTaskId().getValue());
+        Assert.assertEquals(Protos.Call.Type.ACCEPT_INVERSE_OFFERS, accept.getType());
+        Assert.assertEquals(List.of(INVERSE_OFFER), accept.getAcceptInverseOffers().getInverseOfferIdsList());
+    }
+
+    @Test
+    public void testBlockingHandlerDoesNotStallCalls() throws Exception {
+        // A single async thread would be taken by the handler if it ran there, leaving none to send the KILL.
+        startScheduler(config((remote, inverseOffer) -> {
+
+            try {
+                remote.killTasks(Map.of(createTaskID("task-1"), AGENT_ID)).get(5, TimeUnit.SECONDS);
+                return CompletableFuture.completedFuture(null);
+
+            } catch (Exception aE) {
+                return CompletableFuture.failedFuture(aE);
+            }
+
+        }).asyncThreads(1));
+
+        mMaster.sendEvent(createUpdateEvent("task-1", TaskState.TASK_RUNNING));
+
+        mMaster.setCallHandler((call) -> {
+
+            if (call.getType() == Protos.Call.Type.KILL) {
+                mMaster.sendEvent(createUpdateEvent("task-1", TaskState.TASK_KILLED));
+            }
+
+            return 202;
+        });
+
+        mMaster.sendEvent(createInverseOffersEvent(INVERSE_OFFER.getValue(), System.currentTimeMillis()));
+
+        Assert.assertEquals(Protos.Call.Type.KILL, mMaster.takeCall().getType());
+        Assert.assertEquals(Protos.Call.Type.ACCEPT_INVERSE_OFFERS, mMaster.takeCall().getType());
+    }
+
+    @Test
+    public void testRescindCancelsPlan() throws Exception {
+        startScheduler(config((remote, inverseOffer) -> CompletableFuture.completedFuture(null)));
+
+        mMaster.sendEvent(createInverseOffersEvent(INVERSE_OFFER.getValue(), System.currentTimeMillis() + 700));
+
+        mMaster.sendEvent(
+                Protos.Event.newBuilder()
+                        .setType(Protos.Event.Type.RESCIND_INVERSE_OFFER)
+                        .setRescindInverseOffer(Protos.Event.RescindInverseOffer.newBuilder().setInverseOfferId(INVERSE_OFFER))
+                        .build()
+        );
+
+        Assert.assertNull(mMaster.getCalls().poll(1000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testFailedPreparationDeclinesInverseOffer() throws Exception {
+        startScheduler(config((remote, inverseOffer) -> CompletableFuture.failedFuture(new IllegalStateException("Unable to migrate"))));
+
+        mMaster.sendEvent(createInverseOffersEvent(INVERSE_OFFER.getValue(), System.currentTimeMillis()));
+
+        final Protos.Call decline = mMaster.takeCall();
+
+        Assert.assertEquals(Protos.Call.Type.DECLINE_INVERSE_OFFERS, decline.getType());
+        Assert.assertEquals(List.of(INVERSE_OFFER), decline.getDeclineInverseOffers().getInverseOfferIdsList());
+    }
+
+    private SchedulerConfig.SchedulerConfigBuilder<?, ?> config(MaintenanceHandler aMaintenanceHandler) {
+        return config().maintenanceHandler(aMaintenanceHandler).maintenanceLeadTimeMillis(200);
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.skytix.schedulerclient.MockMesosMaster.AGENT_ID;
+import static com.skytix.schedulerclient.MockMesosMaster.createOfferID;
+import static com.skytix.schedulerclient.MockMesosMaster.createOffersEvent;
+import static com.skytix.schedulerclient.MockMesosMaster.createTaskID;
+import static org.apache.mesos.v1.Protos.Offer;
+import static org.apache.mesos.v1.Protos.TaskInfo;
+
+public class SchedulerOfferBudgetTest extends AbstractSchedulerTest {
+
+    @Test
+    public void testUnevaluatedOffersAreDeclinedAtDeadline() throws Exception {
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        startScheduler(config().offerTimeBudgetMillis(200), new BaseSchedulerEventHandler() {
+
+            @Override
+            public void handleEvent(Protos.Event aEvent) {
+
+                if (aEvent.getType() == Protos.Event.Type.OFFERS) {
+                    final List<Offer> offers = aEvent.getOffers().getOffersList();
+
+                    getSchedulerRemote().decline(Collections.singletonList(offers.get(0).getId()));
+
+                    try {
+                        // Stall past the budget while still holding the remaining offers.
+                        Thread.sleep(500);
+
+                    } catch (InterruptedException aE) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    handled.countDown();
+                }
+
+            }
+
+            @Override
+            public void onSubscribe(Protos.Event.Subscribed aSubscribeEvent) {
+            }
+
+        });
+
+        mMaster.sendEvent(createOffersEvent("offer-1", "offer-2", "offer-3"));
+
+        final Protos.Call handlerDecline = mMaster.takeCall();
+        final Protos.Call budgetDecline = mMaster.takeCall();
+
+        Assert.assertEquals(List.of(createOfferID("offer-1")), handlerDecline.getDecline().getOfferIdsList());
+        Assert.assertEquals(Protos.Call.Type.DECLINE, budgetDecline.getType());
+        Assert.assertEquals(List.of(createOfferID("offer-2"), createOfferID("offer-3")), budgetDecline.getDecline().getOfferIdsList());
+        Assert.assertEquals(5, budgetDecline.getDecline().getFilters().getRefuseSeconds(), 0);
+
+        // The budget fired while the handler was still running.
+        Assert.assertEquals(1, handled.getCount());
+        Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, mScheduler.getOfferTracker().getExpiredBatches());
+        Assert.assertEquals(2, mScheduler.getOfferTracker().getExpiredOffers());
+        Assert.assertEquals(0, mScheduler.getOfferTracker().getOutstandingOffers());
+    }
+
+    @Test
+    public void testEvaluatedOffersAreNotDeclined() throws Exception {
+
+        startScheduler(config().offerTimeBudgetMillis(200), new BaseSchedulerEventHandler() {
+
+            @Override
+            public void handleEvent(Protos.Event aEvent) {
+
+                if (aEvent.getType() == Protos.Event.Type.OFFERS) {
+                    aEvent.getOffers().getOffersList().forEach((offer) -> getSchedulerRemote().decline(Collections.singletonList(offer.getId())));
+                }
+
+            }
+
+            @Override
+            public void onSubscribe(Protos.Event.Subscribed aSubscribeEvent) {
+            }
+
+        });
+
+        mMaster.sendEvent(createOffersEvent("offer-1", "offer-2"));
+
+        mMaster.takeCall();
+        mMaster.takeCall();
+
+        Assert.assertNull(mMaster.getCalls().poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, mScheduler.getOfferTracker().getExpiredOffers());
+    }
+
+    @Test
+    public void testLateAcceptLeavesOutExpiredOffers() throws Exception {
+        startScheduler(config().offerTimeBudgetMillis(300));
+
+        mMaster.sendEvent(createOffersEvent("offer-1"));
+
+        Assert.assertEquals(List.of(createOfferID("offer-1")), mMaster.takeCall().getDecline().getOfferIdsList());
+
+        mMaster.sendEvent(createOffersEvent("offer-2"));
+        awaitOutstandingOffers(1);
+
+        mScheduler.getRemote().accept(List.of(createOfferID("offer-1"), createOfferID("offer-2")), List.of(createLaunch("task-1"))).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(List.of(createOfferID("offer-2")), mMaster.takeCall().getAccept().getOfferIdsList());
+
+        try {
+            mScheduler.getRemote().accept(List.of(createOfferID("offer-1")), List.of(createLaunch("task-2"))).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the accept of an expired offer to fail");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof CallFailedException);
+        }
+
+        Assert.assertNull(mMaster.getCalls().poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, mScheduler.getDiagnostics().getRecentSendErrors().size());
+        Assert.assertEquals("ACCEPT", mScheduler.getDiagnostics().getRecentSendErrors().get(0).getCallType());
+        Assert.assertEquals(1, mScheduler.getTaskRegistry().getTasks().size());
+        Assert.assertFalse(mScheduler.getTaskRegistry().getTaskStatus(createTaskID("task-2")).isPresent());
+    }
+
+    private Offer.Operation createLaunch(String aTaskID) {
+
+        return Offer.Operation.newBuilder()
+                .setType(Offer.Operation.Type.LAUNCH)
+                .setLaunch(
+                        Offer.Operation.Launch.newBuilder()
+                                .addTaskInfos(
+                                        TaskInfo.newBuilder()
+                                                .setName(aTaskID)
+                                                .setTaskId(createTaskID(aTaskID))
+                                                .setAgentId(AGENT_ID)
+                                )
+                ).build();
+
+    }
+
+}
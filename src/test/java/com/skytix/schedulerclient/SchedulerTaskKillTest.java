@@ -0,0 +1,154 @@
+package com.skytix.schedulerclient;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.skytix.schedulerclient.MockMesosMaster.*;
+import static org.apache.mesos.v1.Protos.*;
+
+public class SchedulerTaskKillTest extends AbstractSchedulerTest {
+
+    @Test
+    public void testDrainAgentCompletesOnTerminalUpdates() throws Exception {
+        startScheduler(config().killTimeoutMillis(60000).killAttempts(3));
+        startTasks("task-1", "task-2", "task-3");
+
+        mMaster.setCallHandler((call) -> {
+
+            if (call.getType() == Protos.Call.Type.KILL) {
+                mMaster.sendEvent(createUpdateEvent(call.getKill().getTaskId().getValue(), TaskState.TASK_KILLED));
+            }
+
+            return 202;
+        });
+
+        final List<TaskStatus> statuses = mScheduler.getRemote().drainAgent(AGENT_ID).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(3, statuses.size());
+        statuses.forEach((status) -> Assert.assertEquals(TaskState.TASK_KILLED, status.getState()));
+        Assert.assertEquals(3, mMaster.getCalls().size());
+        Assert.assertTrue(mScheduler.getTaskRegistry().getActiveTasks(AGENT_ID).isEmpty());
+    }
+
+    @Test
+    public void testKillIsReissuedWhenTaskSurvives() throws Exception {
+        final Set<String> ignored = ConcurrentHashMap.newKeySet();
+
+        startScheduler(config().killTimeoutMillis(200).killAttempts(3));
+        startTasks("task-1");
+
+        mMaster.setCallHandler((call) -> {
+            final String taskID = call.getKill().getTaskId().getValue();
+
+            // The first KILL is lost.
+            if (!ignored.add(taskID)) {
+                mMaster.sendEvent(createUpdateEvent(taskID, TaskState.TASK_KILLED));
+            }
+
+            return 202;
+        });
+
+        final List<TaskStatus> statuses = mScheduler.getRemote().killTasks(Map.of(createTaskID("task-1"), AGENT_ID)).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(TaskState.TASK_KILLED, statuses.get(0).getState());
+        Assert.assertEquals(2, mMaster.getCalls().size());
+    }
+
+    @Test
+    public void testKillFailsAfterAllAttempts() throws Exception {
+        startScheduler(config().killTimeoutMillis(100).killAttempts(2));
+        startTasks("task-1");
+
+        final CompletableFuture<TaskStatus> termination = mScheduler.getTaskRegistry().awaitTermination(createTaskID("task-1"));
+
+        try {
+            mScheduler.getRemote().killTasks(Map.of(createTaskID("task-1"), AGENT_ID)).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the kill to time out");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof TimeoutException);
+        }
+
+        Assert.assertEquals(2, mMaster.getCalls().size());
+
+        // Other callers waiting on the task are unaffected by the kill giving up.
+        Assert.assertFalse(termination.isDone());
+
+        mMaster.sendEvent(createUpdateEvent("task-1", TaskState.TASK_KILLED));
+
+        Assert.assertEquals(TaskState.TASK_KILLED, termination.get(5, TimeUnit.SECONDS).getState());
+        Assert.assertEquals(0, mScheduler.getTaskRegistry().getPendingTerminations());
+    }
+
+    @Test
+    public void testKillFailsWhenSchedulerIsClosed() throws Exception {
+        startScheduler(config().killTimeoutMillis(60000));
+        startTasks("task-1");
+
+        final CompletableFuture<List<TaskStatus>> kill = mScheduler.getRemote().killTasks(Map.of(createTaskID("task-1"), AGENT_ID));
+
+        Assert.assertEquals(Protos.Call.Type.KILL, mMaster.takeCall().getType());
+
+        mScheduler.close();
+
+        try {
+            kill.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the kill to fail once the Scheduler closed");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof IOException);
+        }
+
+    }
+
+    @Test
+    public void testKillFailsWhenSubscriptionEnds() throws Exception {
+        startScheduler(config().killTimeoutMillis(60000));
+        startTasks("task-1");
+
+        final CompletableFuture<TaskStatus> termination = mScheduler.getTaskRegistry().awaitTermination(createTaskID("task-1"));
+        final CompletableFuture<List<TaskStatus>> kill = mScheduler.getRemote().killTasks(Map.of(createTaskID("task-1"), AGENT_ID));
+
+        Assert.assertEquals(Protos.Call.Type.KILL, mMaster.takeCall().getType());
+
+        mMaster.closeSubscription();
+
+        try {
+            kill.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the kill to fail once the subscription ended");
+
+        } catch (ExecutionException aE) {
+            Assert.assertTrue(aE.getCause() instanceof IOException);
+        }
+
+        Assert.assertTrue(termination.isCompletedExceptionally());
+        Assert.assertEquals(0, mScheduler.getTaskRegistry().getPendingTerminations());
+    }
+
+    private void startTasks(String... aTaskIDs) throws InterruptedException {
+
+        for (String taskID : aTaskIDs) {
+            mMaster.sendEvent(createUpdateEvent(taskID, TaskState.TASK_RUNNING));
+        }
+
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (mScheduler.getTaskRegistry().getActiveTasks(AGENT_ID).size() < aTaskIDs.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(aTaskIDs.length, mScheduler.getTaskRegistry().getActiveTasks(AGENT_ID).size());
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.skytix.schedulerclient;
+
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.apache.mesos.v1.Protos.*;
+
+public class TaskRegistryTest {
+    private Path mJournalPath;
+
+    @Before
+    public void setUp() throws IOException {
+        mJournalPath = Files.createTempDirectory("scheduler-journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        try (Stream<Path> files = Files.walk(mJournalPath)) {
+            files.sorted(Comparator.reverseOrder()).forEach((file) -> file.toFile().delete());
+        }
+
+    }
+
+    @Test
+    public void testStateIsRestoredFromJournal() throws IOException {
+        final TaskRegistry registry = TaskRegistry.recover(StateJournal.open(mJournalPath, 64 * 1024));
+
+        registry.frameworkID("framework-1");
+        registry.launched(createTask("task-1"));
+        registry.launched(createTask("task-2"));
+        registry.launched(createTask("task-3"));
+
+        final TaskStatus running = createStatus("task-1", TaskState.TASK_RUNNING, "uuid-1");
+        registry.statusUpdate(running);
+        registry.acknowledged(running);
+
+        registry.statusUpdate(createStatus("task-2", TaskState.TASK_RUNNING, "uuid-2"));
+
+        final TaskStatus finished = createStatus("task-3", TaskState.TASK_FINISHED, "uuid-3");
+        registry.statusUpdate(finished);
+        registry.acknowledged(finished);
+        registry.close();
+
+        final TaskRegistry recovered = TaskRegistry.recover(StateJournal.open(mJournalPath, 64 * 1024));
+
+        Assert.assertEquals("framework-1", recovered.getFrameworkID().orElse(null));
+        Assert.assertEquals(2, recovered.getTasks().size());
+        Assert.assertEquals(TaskState.TASK_RUNNING, recovered.getTaskStatus(createTask("task-1").getTaskId()).get().getState());
+        Assert.assertFalse(recovered.getTaskStatus(createTask("task-3").getTaskId()).isPresent());
+        Assert.assertEquals(1, recovered.getPendingAcknowledgements().size());
+        Assert.assertEquals("task-2", recovered.getPendingAcknowledgements().get(0).getTaskId().getValue());
+
+        recovered.close();
+    }
+
+    @Test
+    public void testJournalIsCompactedWhenSegmentIsFull() throws IOException {
+        final TaskRegistry registry = TaskRegistry.recover(StateJournal.open(mJournalPath, 1024));
+
+        registry.frameworkID("framework-1");
+
+        for (int i = 0; i < 500; i++) {
+            registry.statusUpdate(createStatus("task-1", TaskState.TASK_RUNNING, null));
+        }
+
+        registry.close();
+
+        try (Stream<Path> files = Files.list(mJournalPath)) {
+            Assert.assertEquals(1, files.filter((file) -> file.toString().endsWith(".seg")).count());
+        }
+
+        final TaskRegistry recovered = TaskRegistry.recover(StateJournal.open(mJournalPath, 1024));
+
+        Assert.assertEquals("framework-1", recovered.getFrameworkID().orElse(null));
+        Assert.assertEquals(1, recovered.getTasks().size());
+
+        recovered.close();
+    }
+
+    @Test
+    public void testWritesAreRejectedAfterClose() throws IOException {
+        final StateJournal journal = StateJournal.open(mJournalPath, 1024);
+        final TaskRegistry registry = TaskRegistry.recover(journal);
+
+        registry.frameworkID("framework-1");
+        registry.close();
+
+        // A full segment would otherwise reopen a new segment on the closed journal.
+        for (int i = 0; i < 100; i++) {
+            registry.statusUpdate(createStatus("task-1", TaskState.TASK_RUNNING, null));
+        }
+
+        try {
+            journal.append(StateJournal.TYPE_TASK_REMOVED, new byte[0]);
+            Assert.fail("Expected the closed journal to reject the append");
+
+        } catch (IOException aE) {
+            // Expected
+        }
+
+        try (Stream<Path> files = Files.list(mJournalPath)) {
+            Assert.assertEquals(1, files.filter((file) -> file.toString().endsWith(".seg")).count());
+        }
+
+        final TaskRegistry recovered = TaskRegistry.recover(StateJournal.open(mJournalPath, 1024));
+
+        Assert.assertEquals("framework-1", recovered.getFrameworkID().orElse(null));
+        Assert.assertTrue(recovered.getTasks().isEmpty());
+
+        recovered.close();
+    }
+
+    @Test
+    public void testJournalIsLockedWhileOpen() throws IOException {
+        final StateJournal journal = StateJournal.open(mJournalPath, 1024);
+
+        try {
+            StateJournal.open(mJournalPath, 1024);
+            Assert.fail("Expected the second open to fail while the journal is locked");
+
+        } catch (IOException aE) {
+            // Expected
+        }
+
+        journal.close();
+        StateJournal.open(mJournalPath, 1024).close();
+    }
+
+    @Test
+    public void testInvalidConfigReleasesJournal() throws IOException {
+
+        final SchedulerConfig config = SchedulerConfig.builder()
+                .mesosMasterURL("http://127.0.0.1:1")
+                .journalPath(mJournalPath.toString())
+                .declineBackoffFactor(0.5)
+                .build();
+
+        try {
+            Scheduler.newScheduler(config, new SchedulerEventHandler() {});
+            Assert.fail("Expected the invalid decline policy to be rejected");
+
+        } catch (IllegalArgumentException aE) {
+            // Expected
+        }
+
+        StateJournal.open(mJournalPath, 1024).close();
+    }
+
+    private TaskInfo createTask(String aTaskId) {
+
+        return TaskInfo.newBuilder()
+                .setName(aTaskId)
+                .setTaskId(TaskID.newBuilder().setValue(aTaskId))
+                .setAgentId(createAgent())
+                .build();
+
+    }
+
+    private AgentID createAgent() {
+        return AgentID.newBuilder().setValue("agent-1").build();
+    }
+
+    private TaskStatus createStatus(String aTaskId, TaskState aState, String aUuid) {
+
+        final TaskStatus.Builder status = TaskStatus.newBuilder()
+                .setTaskId(TaskID.newBuilder().setValue(aTaskId))
+                .setAgentId(createAgent())
+                .setState(aState);
+
+        if (aUuid != null) {
+            status.setUuid(ByteString.copyFromUtf8(aUuid));
+        }
+
+        return status.build();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.skytix.schedulerclient.mesos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.skytix.schedulerclient.mesos.CompactOfferTest.createOffer;
+import static com.skytix.schedulerclient.mesos.CompactOfferTest.parse;
+import static org.apache.mesos.v1.Protos.*;
+
+/**
+ * Compares the retained heap of offers parsed off the wire with their compact form, including the intern pool.
+ *
+ * Heap measurements depend on the garbage collector so this is excluded from the test task and run with
+ * {@code gradle benchmark}.
+ */
+public class CompactOfferBenchmark {
+    private static final int AGENTS = 500;
+    private static final int OFFERS = 5000;
+
+    @Test
+    public void testCompactOffersRetainLessHeap() {
+        final List<byte[]> wireOffers = new ArrayList<>();
+
+        for (int i = 0; i < OFFERS; i++) {
+            wireOffers.add(createOffer(i, i % AGENTS).toByteArray());
+        }
+
+        final long rawHeap = retainedHeap(() -> {
+            final List<Offer> offers = new ArrayList<>(OFFERS);
+
+            for (byte[] wireOffer : wireOffers) {
+                offers.add(parse(wireOffer));
+            }
+
+            return offers;
+        });
+
+        final long compactHeap = retainedHeap(() -> {
+            final StringInternPool pool = new StringInternPool(100000);
+            final List<Object> offers = new ArrayList<>(OFFERS);
+
+            for (byte[] wireOffer : wireOffers) {
+                offers.add(CompactOffer.from(parse(wireOffer), pool));
+            }
+
+            offers.add(pool);
+
+            return offers;
+        });
+
+        Assert.assertTrue(
+                String.format("Retained heap for %d offers: protobuf=%dKB compact=%dKB", OFFERS, rawHeap / 1024, compactHeap / 1024),
+                compactHeap < rawHeap / 2
+        );
+
+    }
+
+    private static long retainedHeap(Supplier<Object> aAllocation) {
+        final long before = usedHeap();
+        final Object retained = aAllocation.get();
+        final long after = usedHeap();
+
+        Reference.reachabilityFence(retained);
+
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+
+            try {
+                Thread.sleep(20);
+
+            } catch (InterruptedException aE) {
+                Thread.currentThread().interrupt();
+            }
+
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
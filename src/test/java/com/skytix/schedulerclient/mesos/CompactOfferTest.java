@@ -0,0 +1,148 @@
+package com.skytix.schedulerclient.mesos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.apache.mesos.v1.Protos.*;
+
+public class CompactOfferTest {
+
+    @Test
+    public void testCompactOfferRetainsOfferDetails() {
+        final StringInternPool pool = new StringInternPool(1000);
+        final Offer offer = createOffer(1, 7);
+        final CompactOffer compact = CompactOffer.from(offer, pool);
+
+        Assert.assertEquals(offer.getId(), compact.getId());
+        Assert.assertEquals(offer.getAgentId(), compact.getAgentId());
+        Assert.assertEquals(offer.getHostname(), compact.getHostname());
+        Assert.assertEquals("web", compact.getRole());
+        Assert.assertEquals(4, compact.getScalar(MesosConstants.SCALAR_CPU), 0);
+        Assert.assertEquals(8192, compact.getScalar(MesosConstants.SCALAR_MEM), 0);
+        Assert.assertArrayEquals(new long[] {31000, 31099, 32000, 32099}, compact.getRanges(MesosConstants.RANGE_PORTS));
+        Assert.assertEquals("rack-7", compact.getAttribute("rack"));
+        Assert.assertNull(compact.getAttribute("missing"));
+    }
+
+    @Test
+    public void testRepeatedStringsAreShared() {
+        final StringInternPool pool = new StringInternPool(1000);
+        final CompactOffer first = CompactOffer.from(parse(createOffer(1, 1)), pool);
+        final CompactOffer second = CompactOffer.from(parse(createOffer(2, 1)), pool);
+
+        Assert.assertSame(first.getHostname(), second.getHostname());
+        Assert.assertSame(first.getResourceName(0), second.getResourceName(0));
+        Assert.assertSame(first.getAttribute("zone"), second.getAttribute("zone"));
+    }
+
+    @Test
+    public void testInternPoolIsBounded() {
+        final StringInternPool pool = new StringInternPool(10);
+
+        for (int i = 0; i < 1000; i++) {
+            pool.intern("value-" + i);
+        }
+
+        Assert.assertTrue(pool.size() <= 10);
+    }
+
+    @Test
+    public void testResourcesCanBeRebuilt() {
+        final StringInternPool pool = new StringInternPool(1000);
+        final Offer plain = createOffer(1, 1);
+
+        final Resource volume = Resource.newBuilder()
+                .setName(MesosConstants.SCALAR_DISK)
+                .setType(Value.Type.SCALAR)
+                .setScalar(Value.Scalar.newBuilder().setValue(1024))
+                .setAllocationInfo(Resource.AllocationInfo.newBuilder().setRole("web"))
+                .addReservations(
+                        Resource.ReservationInfo.newBuilder()
+                                .setType(Resource.ReservationInfo.Type.DYNAMIC)
+                                .setRole("web")
+                                .setPrincipal("scheduler")
+                )
+                .setDisk(
+                        Resource.DiskInfo.newBuilder()
+                                .setPersistence(Resource.DiskInfo.Persistence.newBuilder().setId("volume-1"))
+                                .setVolume(Volume.newBuilder().setContainerPath("data").setMode(Volume.Mode.RW))
+                )
+                .build();
+
+        final Offer reserved = plain.toBuilder().addResources(volume).build();
+        final CompactOffer compact = CompactOffer.from(reserved, pool);
+
+        Assert.assertEquals(reserved.getResourcesList(), compact.toResources());
+        Assert.assertSame(volume, compact.toResource(reserved.getResourcesCount() - 1));
+        Assert.assertEquals("web", compact.getResourceRole(reserved.getResourcesCount() - 1));
+    }
+
+    private static Offer parse(Offer aOffer) {
+        return parse(aOffer.toByteArray());
+    }
+
+    static Offer parse(byte[] aOffer) {
+
+        try {
+            return Offer.parseFrom(aOffer);
+
+        } catch (Exception aE) {
+            throw new IllegalStateException(aE);
+        }
+
+    }
+
+    static Offer createOffer(int aOfferIndex, int aAgentIndex) {
+        final Resource.AllocationInfo allocation = Resource.AllocationInfo.newBuilder().setRole("web").build();
+
+        return Offer.newBuilder()
+                .setId(OfferID.newBuilder().setValue(String.format("5a3c8b2e-1f44-4b7a-9f3e-6d1c2b7a9e10-O%d", aOfferIndex)))
+                .setFrameworkId(FrameworkID.newBuilder().setValue("8d1f2c3b-4e5a-6b7c-8d9e-0f1a2b3c4d5e-0000"))
+                .setAgentId(AgentID.newBuilder().setValue(String.format("0c9e8a7b-6d5c-4b3a-2918-7f6e5d4c3b2a-S%d", aAgentIndex)))
+                .setHostname(String.format("mesos-agent-%04d.prod.cluster.example.com", aAgentIndex))
+                .setAllocationInfo(allocation)
+                .addResources(createScalar(MesosConstants.SCALAR_CPU, 4, allocation))
+                .addResources(createScalar(MesosConstants.SCALAR_MEM, 8192, allocation))
+                .addResources(createScalar(MesosConstants.SCALAR_DISK, 102400, allocation))
+                .addResources(
+                        Resource.newBuilder()
+                                .setName(MesosConstants.RANGE_PORTS)
+                                .setType(Value.Type.RANGES)
+                                .setRanges(
+                                        Value.Ranges.newBuilder()
+                                                .addRange(Value.Range.newBuilder().setBegin(31000).setEnd(31099))
+                                                .addRange(Value.Range.newBuilder().setBegin(32000).setEnd(32099))
+                                )
+                                .setAllocationInfo(allocation)
+                )
+                .addAttributes(createText("rack", "rack-" + aAgentIndex % 20))
+                .addAttributes(createText("zone", "ap-southeast-2" + (char) ('a' + aAgentIndex % 3)))
+                .addAttributes(createText("instance-type", "m5.2xlarge"))
+                .addAttributes(createText("os", "ubuntu-20.04"))
+                .addAttributes(createText("pool", "general-purpose"))
+                .build();
+
+    }
+
+    private static Resource createScalar(String aName, double aValue, Resource.AllocationInfo aAllocation) {
+
+        return Resource.newBuilder()
+                .setName(aName)
+                .setType(Value.Type.SCALAR)
+                .setScalar(Value.Scalar.newBuilder().setValue(aValue))
+                .setAllocationInfo(aAllocation)
+                .build();
+
+    }
+
+    private static Attribute createText(String aName, String aValue) {
+
+        return Attribute.newBuilder()
+                .setName(aName)
+                .setType(Value.Type.TEXT)
+                .setText(Value.Text.newBuilder().setValue(aValue))
+                .build();
+
+    }
+
+}